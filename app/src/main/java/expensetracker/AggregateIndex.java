@@ -0,0 +1,723 @@
+package expensetracker;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Running expense totals (in cents) and counts by date and by category.
+ * Each series is a set of Fenwick trees over chunks of 512 days, allocated
+ * as days in them get expenses, plus a Fenwick tree over the chunks'
+ * totals, so any date-range sum or count is answered in O(log days), and
+ * the category breakdown of a range in O(categories * log days). Memory
+ * follows the chunks that hold expenses, so a far-off date costs one chunk
+ * rather than every day up to it. Daily, weekly, monthly and yearly trends
+ * are read the same way, with one prefix sum per bucket boundary, so the
+ * day trees serve as the rollup tables of every coarser interval. Category
+ * series are kept in an array indexed by category id; a category merged
+ * into another keeps its series and is folded into the target when a
+ * breakdown is asked for, so merges cost nothing here. Alongside the trees,
+ * a running total per month and category (month counters) lets budget
+ * checks read a month's spending in O(1). The index is updated on every
+ * add, update and delete. All methods synchronize on the index, so reports
+ * can be computed off the event dispatch thread while the ledger is being
+ * edited.
+ * <p>
+ * An index opened with {@link #building} is summed on a background thread.
+ * Changes made meanwhile are queued and applied once the sums are in, and
+ * queries wait for that. The build takes no other lock, but what runs once
+ * it is done may lock the dictionary, so callers that lock the dictionary
+ * too call awaitReady() before they do.
+ */
+class AggregateIndex {
+
+    private static final int CHUNK_BITS = 9;
+    private static final int CHUNK_DAYS = 1 << CHUNK_BITS;
+    private static final int PARALLEL_THRESHOLD_ROWS = 1 << 18;
+    private static final int SEGMENT_ROWS = 1 << 15;
+    private static final Metrics.Counter ROWS_SCANNED = Metrics.counter("rows.scanned");
+
+    // Sums the ledgers being opened, each on its own thread, so one large ledger does not hold up the others
+    private static final ExecutorService BUILDER = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "aggregate-index");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /** Fenwick trees of amounts and counts over a run of slots, 1-based. */
+    private static final class DayTree {
+        long[] amounts;
+        int[] counts;
+
+        DayTree(int capacity) {
+            amounts = new long[capacity + 1];
+            counts = new int[capacity + 1];
+        }
+
+        /** Builds a tree in place from per-day values stored at slot + 1. */
+        DayTree(long[] amounts, int[] counts) {
+            this.amounts = amounts;
+            this.counts = counts;
+            build(amounts, counts);
+        }
+
+        void add(int slot, long amount, int count) {
+            for (int i = slot + 1; i < amounts.length; i += i & -i) {
+                amounts[i] += amount;
+                counts[i] += count;
+            }
+        }
+
+        /** Turns per-day values into a Fenwick tree in linear time. */
+        private static void build(long[] amounts, int[] counts) {
+            int n = amounts.length - 1;
+            for (int i = 1; i <= n; i++) {
+                int parent = i + (i & -i);
+                if (parent <= n) {
+                    amounts[parent] += amounts[i];
+                    counts[parent] += counts[i];
+                }
+            }
+        }
+
+        /** The sum of the first length slots. */
+        private long amountPrefix(int length) {
+            long sum = 0;
+            for (int i = length; i > 0; i -= i & -i) {
+                sum += amounts[i];
+            }
+            return sum;
+        }
+
+        private int countPrefix(int length) {
+            int sum = 0;
+            for (int i = length; i > 0; i -= i & -i) {
+                sum += counts[i];
+            }
+            return sum;
+        }
+    }
+
+    /**
+     * The amounts and counts of one series by day. Each chunk of CHUNK_DAYS
+     * days that has expenses gets a tree of its own, and the chunks' totals
+     * form one more tree, by position, so a prefix sum reads two tree paths.
+     * Adding a chunk rebuilds the tree of totals, in time linear in the
+     * number of chunks, which only happens when expenses reach a new chunk.
+     */
+    private static final class Series {
+        // Chunk numbers (epoch day >> CHUNK_BITS) in ascending order, and their trees
+        private int[] keys = new int[0];
+        private DayTree[] chunks = new DayTree[0];
+        private DayTree totals = new DayTree(0);
+
+        Series() {
+        }
+
+        /** A series of built chunk trees, by ascending chunk number. */
+        Series(int[] keys, DayTree[] chunks) {
+            this.keys = keys;
+            this.chunks = chunks;
+            rebuildTotals();
+        }
+
+        void add(long epochDay, long amount, int count) {
+            int position = position((int) (epochDay >> CHUNK_BITS));
+            chunks[position].add((int) (epochDay & (CHUNK_DAYS - 1)), amount, count);
+            totals.add(position, amount, count);
+        }
+
+        /** Returns the total of all days before a day. */
+        long amountBefore(long epochDay) {
+            int key = chunk(epochDay);
+            int position = Arrays.binarySearch(keys, key);
+            if (position < 0) {
+                return totals.amountPrefix(~position);
+            }
+            return totals.amountPrefix(position) + chunks[position].amountPrefix((int) (epochDay & (CHUNK_DAYS - 1)));
+        }
+
+        /** Returns the number of expenses on all days before a day. */
+        int countBefore(long epochDay) {
+            int key = chunk(epochDay);
+            int position = Arrays.binarySearch(keys, key);
+            if (position < 0) {
+                return totals.countPrefix(~position);
+            }
+            return totals.countPrefix(position) + chunks[position].countPrefix((int) (epochDay & (CHUNK_DAYS - 1)));
+        }
+
+        int count() {
+            return totals.countPrefix(keys.length);
+        }
+
+        long heapBytes() {
+            return ((long) keys.length * (CHUNK_DAYS + 2) + 1) * (Long.BYTES + Integer.BYTES);
+        }
+
+        /** Returns the position of a chunk, adding an empty one if there is none. */
+        private int position(int key) {
+            int position = Arrays.binarySearch(keys, key);
+            if (position >= 0) {
+                return position;
+            }
+            position = ~position;
+            int n = keys.length;
+            int[] newKeys = new int[n + 1];
+            DayTree[] newChunks = new DayTree[n + 1];
+            System.arraycopy(keys, 0, newKeys, 0, position);
+            System.arraycopy(chunks, 0, newChunks, 0, position);
+            System.arraycopy(keys, position, newKeys, position + 1, n - position);
+            System.arraycopy(chunks, position, newChunks, position + 1, n - position);
+            newKeys[position] = key;
+            newChunks[position] = new DayTree(CHUNK_DAYS);
+            keys = newKeys;
+            chunks = newChunks;
+            rebuildTotals();
+            return position;
+        }
+
+        private void rebuildTotals() {
+            long[] amounts = new long[keys.length + 1];
+            int[] counts = new int[keys.length + 1];
+            for (int i = 0; i < keys.length; i++) {
+                amounts[i + 1] = chunks[i].amountPrefix(CHUNK_DAYS);
+                counts[i + 1] = chunks[i].countPrefix(CHUNK_DAYS);
+            }
+            totals = new DayTree(amounts, counts);
+        }
+
+        /** Returns the chunk number of a day, clamped to the int range for days no expense can have. */
+        private static int chunk(long epochDay) {
+            return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, epochDay >> CHUNK_BITS));
+        }
+    }
+
+    private Series all = new Series();
+    private Series[] byCategory = new Series[0];
+    private final CategoryDictionary categories;
+
+    // Month counters by month number (year * 12 + month - 1): slot 0 holds all expenses, slot id + 1 each category
+    private final Map<Integer, long[]> months = new HashMap<>();
+    // The month of the last update, so that runs of rows in one month skip the date arithmetic
+    private long cachedMonthStart = 1;
+    private long cachedMonthEnd;
+    private int cachedMonth;
+    // Guarded by this: changes made while the index is being built, and what to run once it is; null after
+    private Updates queued;
+    private List<Runnable> onReady;
+    private RuntimeException failure;
+
+    AggregateIndex(CategoryDictionary categories) {
+        this.categories = categories;
+    }
+
+    /** Builds the index on the calling thread. */
+    static AggregateIndex of(Ledger expenses) {
+        return of(expenses, expenses.categories().capacity());
+    }
+
+    /**
+     * Returns an empty index at once and sums the ledger into it on a
+     * background thread. The ledger must not change meanwhile, so callers
+     * pass a {@link Ledger#snapshot()} and report later changes to the index
+     * as usual.
+     */
+    static AggregateIndex building(Ledger expenses) {
+        AggregateIndex index = new AggregateIndex(expenses.categories());
+        index.queued = new Updates();
+        index.onReady = new ArrayList<>();
+        // Read here rather than on the builder, which must not wait for the dictionary's lock
+        int categoryCount = expenses.categories().capacity();
+        BUILDER.execute(() -> {
+            try {
+                index.install(of(expenses, categoryCount));
+            } catch (RuntimeException e) {
+                System.out.println("Error summing expenses: " + e);
+                index.fail(e);
+            }
+        });
+        return index;
+    }
+
+    /**
+     * Sums the ledger with one pass over its columns, copied a segment at a
+     * time into plain arrays. Large ledgers are summed in parallel; smaller
+     * ones in a plain loop, where splitting the work would cost more than it
+     * saves.
+     */
+    private static AggregateIndex of(Ledger expenses, int categoryCount) {
+        AggregateIndex index = new AggregateIndex(expenses.categories());
+        ROWS_SCANNED.add(expenses.size());
+        if (expenses.size() >= PARALLEL_THRESHOLD_ROWS && ForkJoinPool.getCommonPoolParallelism() > 1) {
+            index.build(expenses, categoryCount);
+            return index;
+        }
+        int rows = expenses.size();
+        long[] amounts = new long[Math.min(rows, SEGMENT_ROWS)];
+        int[] epochDays = new int[amounts.length];
+        int[] categoryIds = new int[amounts.length];
+        for (int start = 0; start < rows; start += SEGMENT_ROWS) {
+            int length = Math.min(rows - start, SEGMENT_ROWS);
+            expenses.readColumns(start, start + length, amounts, epochDays, categoryIds);
+            for (int i = 0; i < length; i++) {
+                index.add(epochDays[i], categoryIds[i], amounts[i]);
+            }
+        }
+        return index;
+    }
+
+    /** Returns true once the ledger has been summed, and the index answers queries without waiting. */
+    synchronized boolean isReady() {
+        return queued == null;
+    }
+
+    /** Runs an action once the index is ready: at once if it is, else on the thread that built it. */
+    void whenReady(Runnable action) {
+        synchronized (this) {
+            if (onReady != null) {
+                onReady.add(action);
+                return;
+            }
+        }
+        action.run();
+    }
+
+    synchronized void add(long epochDay, int categoryId, long amount) {
+        if (queued != null) {
+            queued.add(epochDay, categoryId, amount, 1);
+            return;
+        }
+        update(epochDay, categoryId, amount, 1);
+    }
+
+    synchronized void remove(long epochDay, int categoryId, long amount) {
+        if (queued != null) {
+            queued.add(epochDay, categoryId, -amount, -1);
+            return;
+        }
+        update(epochDay, categoryId, -amount, -1);
+    }
+
+    synchronized int count(long startDay, long endDay) {
+        awaitReady();
+        return startDay > endDay ? 0 : all.countBefore(endDay + 1) - all.countBefore(startDay);
+    }
+
+    synchronized long total(long startDay, long endDay) {
+        awaitReady();
+        return startDay > endDay ? 0 : all.amountBefore(endDay + 1) - all.amountBefore(startDay);
+    }
+
+    /**
+     * Returns the total of a month number (see {@link #month}), either of all
+     * expenses or, for a category id of 0 or more, of that category with the
+     * ids merged into it. Merges are folded here, so callers that pass a
+     * category hold the index's lock and then the dictionary's, in that
+     * order, as report queries do.
+     */
+    synchronized long monthTotal(int month, int categoryId) {
+        awaitReady();
+        long[] totals = months.get(month);
+        if (totals == null) {
+            return 0;
+        }
+        if (categoryId < 0) {
+            return totals[0];
+        }
+        long total = 0;
+        int ids = Math.min(totals.length - 1, categories.capacity());
+        for (int id = 0; id < ids; id++) {
+            if (categories.resolve(id) == categoryId) {
+                total += totals[id + 1];
+            }
+        }
+        return total;
+    }
+
+    /** Returns the month number of a day: year * 12 + month - 1. */
+    static int month(long epochDay) {
+        LocalDate date = LocalDate.ofEpochDay(epochDay);
+        return date.getYear() * 12 + date.getMonthValue() - 1;
+    }
+
+    /** Roughly estimates the heap the trees and month counters hold; an index being built counts as empty. */
+    synchronized long heapBytes() {
+        long bytes = all.heapBytes();
+        for (Series series : byCategory) {
+            if (series != null) {
+                bytes += series.heapBytes();
+            }
+        }
+        for (long[] totals : months.values()) {
+            bytes += 64 + (long) totals.length * Long.BYTES;
+        }
+        return bytes;
+    }
+
+    /** Returns the number of expenses stored with a category id, on any day. */
+    synchronized int count(int categoryId) {
+        awaitReady();
+        Series series = categoryId < byCategory.length ? byCategory[categoryId] : null;
+        return series == null ? 0 : series.count();
+    }
+
+    /**
+     * Returns the total and count of each category in the range, indexed by
+     * category id. Trees are linear in their leaves, so the series of a
+     * category that was merged away is simply added to its target's; the
+     * merged id then reads as zero.
+     */
+    synchronized void categoryTotals(long startDay, long endDay, long[] totals, int[] counts) {
+        awaitReady();
+        if (startDay > endDay) {
+            return;
+        }
+        for (int id = 0; id < byCategory.length; id++) {
+            Series series = byCategory[id];
+            if (series != null) {
+                int target = categories.resolve(id);
+                totals[target] += series.amountBefore(endDay + 1) - series.amountBefore(startDay);
+                counts[target] += series.countBefore(endDay + 1) - series.countBefore(startDay);
+            }
+        }
+    }
+
+    /**
+     * Adds up the buckets between consecutive boundary days: bucket k runs from
+     * boundaries[k] to the day before boundaries[k + 1]. totals receives the
+     * sums of all expenses and categoryTotals[id] those of each category, with
+     * merged categories folded into their target. Each boundary costs one
+     * prefix sum per tree, so a trend reads a few hundred tree paths whatever
+     * the number of expenses.
+     */
+    synchronized void bucketTotals(long[] boundaries, long[] totals, long[][] categoryTotals) {
+        awaitReady();
+        long[] prefixes = new long[boundaries.length];
+        prefixSums(all, boundaries, prefixes);
+        for (int k = 0; k < totals.length; k++) {
+            totals[k] += prefixes[k + 1] - prefixes[k];
+        }
+        for (int id = 0; id < byCategory.length; id++) {
+            Series series = byCategory[id];
+            if (series != null) {
+                long[] target = categoryTotals[categories.resolve(id)];
+                prefixSums(series, boundaries, prefixes);
+                for (int k = 0; k < target.length; k++) {
+                    target[k] += prefixes[k + 1] - prefixes[k];
+                }
+            }
+        }
+    }
+
+    /** Stores the series' total of all days before each boundary day. */
+    private static void prefixSums(Series series, long[] boundaries, long[] prefixes) {
+        for (int k = 0; k < boundaries.length; k++) {
+            prefixes[k] = series.amountBefore(boundaries[k]);
+        }
+    }
+
+    /**
+     * Sums the ledger on the fork/join pool. Every worker thread adds the
+     * rows of the segments it runs into its own per-category day sums, kept
+     * in chunks like the series are, so a worker holds only the chunks its
+     * rows fall into, however far apart the dates are. The sums of all
+     * workers are added together and turned into trees in linear time. Rows
+     * keep their stored category ids; merges are folded at query time anyway.
+     */
+    private void build(Ledger expenses, int categoryCount) {
+        List<DaySums> partials = new ArrayList<>();
+        ThreadLocal<DaySums> local = ThreadLocal.withInitial(() -> {
+            DaySums sums = new DaySums(categoryCount);
+            synchronized (partials) {
+                partials.add(sums);
+            }
+            return sums;
+        });
+        ForkJoinPool.commonPool().invoke(new Segment(expenses, 0, expenses.size(), local));
+
+        DaySums total = partials.get(0);
+        for (int i = 1; i < partials.size(); i++) {
+            total.addAll(partials.get(i));
+        }
+        ChunkSums allSums = new ChunkSums();
+        for (ChunkSums sums : total.byCategory) {
+            if (sums != null) {
+                allSums.addAll(sums);
+            }
+        }
+        // Month counters from the day sums, before the trees are built over them
+        for (int id = 0; id < categoryCount; id++) {
+            ChunkSums sums = total.byCategory[id];
+            if (sums != null) {
+                addMonths(sums, id);
+            }
+        }
+        byCategory = new Series[categoryCount];
+        for (int id = 0; id < categoryCount; id++) {
+            ChunkSums sums = total.byCategory[id];
+            if (sums != null) {
+                byCategory[id] = sums.toSeries();
+            }
+        }
+        all = allSums.toSeries();
+    }
+
+    /** Adds the per-day sums of a category to the month counters. */
+    private void addMonths(ChunkSums sums, int categoryId) {
+        for (int c = 0; c < sums.keys.length; c++) {
+            long[] amounts = sums.amounts[c];
+            long firstDay = (long) sums.keys[c] << CHUNK_BITS;
+            for (int slot = 1; slot <= CHUNK_DAYS; slot++) {
+                if (amounts[slot] == 0) {
+                    continue;
+                }
+                long epochDay = firstDay + slot - 1;
+                if (epochDay < cachedMonthStart || epochDay > cachedMonthEnd) {
+                    cacheMonth(epochDay);
+                }
+                long[] totals = monthTotals(cachedMonth, categoryId);
+                totals[0] += amounts[slot];
+                totals[categoryId + 1] += amounts[slot];
+            }
+        }
+    }
+
+    /** Takes over the sums of a finished build, applies the queued changes and wakes up waiting queries. */
+    private void install(AggregateIndex built) {
+        List<Runnable> actions;
+        synchronized (this) {
+            all = built.all;
+            byCategory = built.byCategory;
+            months.putAll(built.months);
+            for (int i = 0; i < queued.size; i++) {
+                update(queued.epochDays[i], queued.categoryIds[i], queued.amounts[i], queued.counts[i]);
+            }
+            queued = null;
+            actions = onReady;
+            onReady = null;
+            notifyAll();
+        }
+        actions.forEach(Runnable::run);
+    }
+
+    private synchronized void fail(RuntimeException e) {
+        failure = e;
+        notifyAll();
+    }
+
+    /** Waits until the ledger has been summed; throws IllegalStateException if that failed. */
+    synchronized void awaitReady() {
+        boolean interrupted = false;
+        while (queued != null && failure == null) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) {
+            throw new IllegalStateException("The expenses could not be summed", failure);
+        }
+    }
+
+    /** Changes made while the index is being built, in order. */
+    private static final class Updates {
+        long[] epochDays = new long[16];
+        int[] categoryIds = new int[16];
+        long[] amounts = new long[16];
+        int[] counts = new int[16];
+        int size;
+
+        void add(long epochDay, int categoryId, long amount, int count) {
+            if (size == epochDays.length) {
+                epochDays = Arrays.copyOf(epochDays, size * 2);
+                categoryIds = Arrays.copyOf(categoryIds, size * 2);
+                amounts = Arrays.copyOf(amounts, size * 2);
+                counts = Arrays.copyOf(counts, size * 2);
+            }
+            epochDays[size] = epochDay;
+            categoryIds[size] = categoryId;
+            amounts[size] = amount;
+            counts[size] = count;
+            size++;
+        }
+    }
+
+    /** The per-category day sums of one worker. */
+    private static final class DaySums {
+        final ChunkSums[] byCategory;
+
+        DaySums(int categoryCount) {
+            byCategory = new ChunkSums[categoryCount];
+        }
+
+        void add(long epochDay, int categoryId, long amount) {
+            if (byCategory[categoryId] == null) {
+                byCategory[categoryId] = new ChunkSums();
+            }
+            byCategory[categoryId].add(epochDay, amount);
+        }
+
+        void addAll(DaySums other) {
+            for (int id = 0; id < byCategory.length; id++) {
+                if (other.byCategory[id] == null) {
+                    continue;
+                }
+                if (byCategory[id] == null) {
+                    byCategory[id] = other.byCategory[id];
+                } else {
+                    byCategory[id].addAll(other.byCategory[id]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Plain per-day amounts and counts, at slot + 1 of an array per chunk of
+     * CHUNK_DAYS days, allocated as rows reach the chunk. toSeries() builds
+     * the trees over them in place.
+     */
+    private static final class ChunkSums {
+        int[] keys = new int[0];
+        long[][] amounts = new long[0][];
+        int[][] counts = new int[0][];
+        // The chunk of the last row, since rows mostly come in date order
+        private int last = -1;
+
+        void add(long epochDay, long amount) {
+            int key = (int) (epochDay >> CHUNK_BITS);
+            if (last < 0 || keys[last] != key) {
+                last = position(key);
+            }
+            int slot = (int) (epochDay & (CHUNK_DAYS - 1)) + 1;
+            amounts[last][slot] += amount;
+            counts[last][slot]++;
+        }
+
+        void addAll(ChunkSums other) {
+            for (int c = 0; c < other.keys.length; c++) {
+                int position = position(other.keys[c]);
+                for (int slot = 1; slot <= CHUNK_DAYS; slot++) {
+                    amounts[position][slot] += other.amounts[c][slot];
+                    counts[position][slot] += other.counts[c][slot];
+                }
+            }
+        }
+
+        Series toSeries() {
+            DayTree[] chunks = new DayTree[keys.length];
+            for (int c = 0; c < keys.length; c++) {
+                chunks[c] = new DayTree(amounts[c], counts[c]);
+            }
+            return new Series(keys, chunks);
+        }
+
+        /** Returns the position of a chunk, adding an empty one if there is none. */
+        private int position(int key) {
+            int position = Arrays.binarySearch(keys, key);
+            if (position >= 0) {
+                return position;
+            }
+            position = ~position;
+            int n = keys.length;
+            int[] newKeys = new int[n + 1];
+            long[][] newAmounts = new long[n + 1][];
+            int[][] newCounts = new int[n + 1][];
+            System.arraycopy(keys, 0, newKeys, 0, position);
+            System.arraycopy(amounts, 0, newAmounts, 0, position);
+            System.arraycopy(counts, 0, newCounts, 0, position);
+            System.arraycopy(keys, position, newKeys, position + 1, n - position);
+            System.arraycopy(amounts, position, newAmounts, position + 1, n - position);
+            System.arraycopy(counts, position, newCounts, position + 1, n - position);
+            newKeys[position] = key;
+            newAmounts[position] = new long[CHUNK_DAYS + 1];
+            newCounts[position] = new int[CHUNK_DAYS + 1];
+            keys = newKeys;
+            amounts = newAmounts;
+            counts = newCounts;
+            last = -1;
+            return position;
+        }
+    }
+
+    /** A range of ledger rows, halved until it is small enough to sum directly. */
+    private static final class Segment extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Ledger expenses;
+        private final int start;
+        private final int end;
+        private final ThreadLocal<DaySums> local;
+
+        Segment(Ledger expenses, int start, int end, ThreadLocal<DaySums> local) {
+            this.expenses = expenses;
+            this.start = start;
+            this.end = end;
+            this.local = local;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start > SEGMENT_ROWS) {
+                int middle = (start + end) >>> 1;
+                invokeAll(new Segment(expenses, start, middle, local), new Segment(expenses, middle, end, local));
+                return;
+            }
+            DaySums sums = local.get();
+            long[] amounts = new long[end - start];
+            int[] epochDays = new int[amounts.length];
+            int[] categoryIds = new int[amounts.length];
+            expenses.readColumns(start, end, amounts, epochDays, categoryIds);
+            for (int i = 0; i < amounts.length; i++) {
+                sums.add(epochDays[i], categoryIds[i], amounts[i]);
+            }
+        }
+    }
+
+    private void update(long epochDay, int categoryId, long amount, int count) {
+        all.add(epochDay, amount, count);
+        if (categoryId >= byCategory.length) {
+            byCategory = Arrays.copyOf(byCategory, Math.max(categoryId + 1, byCategory.length * 2));
+        }
+        if (byCategory[categoryId] == null) {
+            byCategory[categoryId] = new Series();
+        }
+        byCategory[categoryId].add(epochDay, amount, count);
+
+        if (epochDay < cachedMonthStart || epochDay > cachedMonthEnd) {
+            cacheMonth(epochDay);
+        }
+        long[] totals = monthTotals(cachedMonth, categoryId);
+        totals[0] += amount;
+        totals[categoryId + 1] += amount;
+    }
+
+    private void cacheMonth(long epochDay) {
+        LocalDate date = LocalDate.ofEpochDay(epochDay);
+        cachedMonth = date.getYear() * 12 + date.getMonthValue() - 1;
+        cachedMonthStart = date.withDayOfMonth(1).toEpochDay();
+        cachedMonthEnd = date.withDayOfMonth(date.lengthOfMonth()).toEpochDay();
+    }
+
+    /** Returns the counters of a month, grown to hold the category id. */
+    private long[] monthTotals(int month, int categoryId) {
+        long[] totals = months.get(month);
+        if (totals == null || totals.length < categoryId + 2) {
+            totals = totals == null ? new long[Math.max(categoryId + 2, byCategory.length + 1)]
+                    : Arrays.copyOf(totals, Math.max(categoryId + 2, totals.length * 2));
+            months.put(month, totals);
+        }
+        return totals;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,225 @@
+package expensetracker;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Monthly spending limits, overall and per category, and the alerts raised
+ * when a change pushes a month's spending past 80% or 100% of one. Changes
+ * are recorded as they are made, one amount per month and budget, and
+ * checked afterwards against the month counters of the
+ * {@link AggregateIndex}, which every change already updates. A check reads
+ * one counter per budget and month changed, and a category's counter folds
+ * the ids merged into it, so it costs O(budgets changed * category ids)
+ * however large the ledger is. A bulk load records its rows the same way and
+ * is checked once at the end: changes within a month only add to an array
+ * and note the ids they touch, so moving to the next month costs the ids
+ * touched, and while no budget is set, recording costs nothing at all. Limits
+ * are kept by category id, so the budget of a merged category comes back if
+ * the merge is undone. Not synchronized; {@link ExpenseStore} guards it.
+ */
+class Budgets {
+
+    /** Key of the budget for all expenses together. */
+    static final int OVERALL = -1;
+
+    private static final int[] THRESHOLDS = { 80, 100 };
+
+    /** A budget and what was spent against it in one month. */
+    static final class Status {
+        /** The category name, or null for the overall budget. */
+        final String category;
+        final YearMonth month;
+        final long limitCents;
+        final long spentCents;
+
+        Status(String category, YearMonth month, long limitCents, long spentCents) {
+            this.category = category;
+            this.month = month;
+            this.limitCents = limitCents;
+            this.spentCents = spentCents;
+        }
+
+        int percent() {
+            return (int) (spentCents * 100 / limitCents);
+        }
+
+        String name() {
+            return category == null ? "All expenses" : category;
+        }
+    }
+
+    /** Spending crossed a threshold, in percent of the limit, with the last change. */
+    static final class Alert {
+        final Status status;
+        final int threshold;
+
+        Alert(Status status, int threshold) {
+            this.status = status;
+            this.threshold = threshold;
+        }
+
+        String message() {
+            return String.format("%s: %s of %s spent in %s, %s the %d%% mark", status.name(),
+                    Money.format(status.spentCents), Money.format(status.limitCents), status.month,
+                    threshold >= 100 ? "over" : "past", threshold);
+        }
+    }
+
+    private final CategoryDictionary categories;
+    private final Map<Integer, Long> limits = new LinkedHashMap<>();
+    // Spending changes not checked yet, keyed by month number << 32 | budget key
+    private final Map<Long, Long> pending = new LinkedHashMap<>();
+    // Changes in the cached month by dictionary id + 1, with all expenses at 0, not yet added to pending
+    private long[] monthChanges = new long[1];
+    // Dictionary ids whose entry in monthChanges was zero when a change came; may repeat
+    private int[] touched = new int[8];
+    private int touchedCount;
+    private long cachedMonthStart = 1;
+    private long cachedMonthEnd;
+    private int cachedMonth;
+
+    Budgets(CategoryDictionary categories) {
+        this.categories = categories;
+    }
+
+    /** Sets the monthly limit of a category id or OVERALL; a limit of 0 or less removes the budget. */
+    void setLimit(int key, long limitCents) {
+        if (limitCents > 0) {
+            limits.put(key, limitCents);
+        } else {
+            limits.remove(key);
+        }
+    }
+
+    /** The limits by category id or OVERALL, in the order they were set. */
+    Map<Integer, Long> limits() {
+        return new LinkedHashMap<>(limits);
+    }
+
+    /** Notes that spending on a day and category changed by an amount. */
+    void record(long epochDay, int categoryId, long amount) {
+        if (limits.isEmpty()) {
+            return;
+        }
+        if (epochDay < cachedMonthStart || epochDay > cachedMonthEnd) {
+            flushMonth();
+            LocalDate date = LocalDate.ofEpochDay(epochDay);
+            cachedMonth = AggregateIndex.month(epochDay);
+            cachedMonthStart = date.withDayOfMonth(1).toEpochDay();
+            cachedMonthEnd = date.withDayOfMonth(date.lengthOfMonth()).toEpochDay();
+        }
+        if (categoryId + 1 >= monthChanges.length) {
+            monthChanges = Arrays.copyOf(monthChanges, Math.max(categoryId + 2, monthChanges.length * 2));
+        }
+        if (amount == 0) {
+            return;
+        }
+        if (monthChanges[categoryId + 1] == 0) {
+            if (touchedCount == touched.length) {
+                touched = Arrays.copyOf(touched, touchedCount * 2);
+            }
+            touched[touchedCount++] = categoryId;
+        }
+        monthChanges[0] += amount;
+        monthChanges[categoryId + 1] += amount;
+    }
+
+    /** Adds the changes of the cached month to pending, by the budget each one counts against. */
+    private void flushMonth() {
+        if (touchedCount == 0) {
+            return;
+        }
+        if (monthChanges[0] != 0 && limits.containsKey(OVERALL)) {
+            pending.merge(key(cachedMonth, OVERALL), monthChanges[0], Long::sum);
+        }
+        monthChanges[0] = 0;
+        for (int i = 0; i < touchedCount; i++) {
+            int id = touched[i];
+            long change = monthChanges[id + 1];
+            // A repeated id finds its slot already cleared
+            if (change != 0) {
+                monthChanges[id + 1] = 0;
+                int target = categories.resolve(id);
+                if (limits.containsKey(target)) {
+                    pending.merge(key(cachedMonth, target), change, Long::sum);
+                }
+            }
+        }
+        touchedCount = 0;
+    }
+
+    /**
+     * Returns an alert for every budget that the changes recorded since the
+     * last check pushed past a threshold in some month, and forgets them.
+     * Spending that only falls, or was already past the threshold, is quiet.
+     */
+    List<Alert> check(AggregateIndex aggregates) {
+        flushMonth();
+        if (pending.isEmpty()) {
+            return List.of();
+        }
+        List<Alert> alerts = new ArrayList<>();
+        // The index folds merged categories, so lock it and then the dictionary, as reports do
+        synchronized (aggregates) {
+            if (!aggregates.isReady()) {
+                // Keep the changes for the check the store makes once the index is built
+                return List.of();
+            }
+            synchronized (categories) {
+                for (Map.Entry<Long, Long> change : pending.entrySet()) {
+                    int month = (int) (change.getKey() >> 32);
+                    int budget = (int) (long) change.getKey();
+                    Long limit = limits.get(budget);
+                    if (limit == null) {
+                        continue;
+                    }
+                    long spent = aggregates.monthTotal(month, budget);
+                    long before = spent - change.getValue();
+                    for (int k = THRESHOLDS.length - 1; k >= 0; k--) {
+                        long mark = limit * THRESHOLDS[k];
+                        if (spent * 100 >= mark && before * 100 < mark) {
+                            alerts.add(new Alert(status(budget, month, limit, spent), THRESHOLDS[k]));
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+        pending.clear();
+        return alerts;
+    }
+
+    /** Returns every budget with what was spent against it in the month of a day. */
+    List<Status> statuses(AggregateIndex aggregates, LocalDate day) {
+        int month = AggregateIndex.month(day.toEpochDay());
+        List<Status> statuses = new ArrayList<>();
+        synchronized (aggregates) {
+            aggregates.awaitReady();
+            synchronized (categories) {
+                for (Map.Entry<Integer, Long> limit : limits.entrySet()) {
+                    int budget = limit.getKey();
+                    // Skip budgets of categories that were merged away or forgotten
+                    if (budget == OVERALL || categories.entry(budget) != null) {
+                        statuses.add(status(budget, month, limit.getValue(), aggregates.monthTotal(month, budget)));
+                    }
+                }
+            }
+        }
+        return statuses;
+    }
+
+    private Status status(int budget, int month, long limit, long spent) {
+        return new Status(budget == OVERALL ? null : categories.entry(budget), YearMonth.of(month / 12, month % 12 + 1),
+                limit, spent);
+    }
+
+    private static long key(int month, int budget) {
+        return (long) month << 32 | (budget & 0xFFFFFFFFL);
+    }
+}
\ No newline at end of file
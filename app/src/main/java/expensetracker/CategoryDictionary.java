@@ -0,0 +1,183 @@
+package expensetracker;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The categories of a ledger, interned to compact int ids. Expenses and the
+ * ledger columns keep only the id, so renaming a category changes one name
+ * and merging or removing one only redirects its id; no expense row is
+ * rewritten. An id that was merged away stays valid and resolves to the
+ * category it was merged into, and ids are never reused, so a merge or a new
+ * category can be undone by putting the old ids back. All methods
+ * synchronize on the dictionary, so reports and exports can resolve names
+ * off the event dispatch thread.
+ */
+class CategoryDictionary {
+
+    private String[] names = new String[8];
+    private int[] canonical = new int[8];
+    private int size;
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final List<Integer> order = new ArrayList<>();
+
+    CategoryDictionary() {
+    }
+
+    /**
+     * Restores a dictionary from its entries: the name stored under each id
+     * (null for ids merged away or forgotten), the id each one resolves to,
+     * and the ids of the category list in order.
+     */
+    CategoryDictionary(String[] entries, int[] canonical, int[] order) {
+        this.names = Arrays.copyOf(entries, Math.max(8, entries.length));
+        this.canonical = Arrays.copyOf(canonical, Math.max(8, canonical.length));
+        this.size = entries.length;
+        for (int id : order) {
+            ids.put(entries[id], id);
+            this.order.add(id);
+        }
+    }
+
+    /** Returns the id of a category, adding it to the end of the list if it is new. */
+    synchronized int intern(String name) {
+        Integer id = ids.get(name);
+        if (id != null) {
+            return id;
+        }
+        if (size == names.length) {
+            names = Arrays.copyOf(names, size * 2);
+            canonical = Arrays.copyOf(canonical, size * 2);
+        }
+        names[size] = name;
+        canonical[size] = size;
+        ids.put(name, size);
+        order.add(size);
+        return size++;
+    }
+
+    /** Returns the id of a category, or -1 if there is no such category. */
+    synchronized int id(String name) {
+        Integer id = ids.get(name);
+        return id != null ? id : -1;
+    }
+
+    /** Returns the position of a category in the list, or -1 if there is no such category. */
+    synchronized int position(String name) {
+        Integer id = ids.get(name);
+        return id != null ? order.indexOf(id) : -1;
+    }
+
+    synchronized boolean contains(String name) {
+        return ids.containsKey(name);
+    }
+
+    synchronized boolean isEmpty() {
+        return ids.isEmpty();
+    }
+
+    /** Returns the id of the category that expenses with the given id belong to now. */
+    synchronized int resolve(int id) {
+        return canonical[id];
+    }
+
+    synchronized String name(int id) {
+        return names[canonical[id]];
+    }
+
+    /** Returns the name stored under an id, or null if the id was merged away or forgotten. */
+    synchronized String entry(int id) {
+        return names[id];
+    }
+
+    /** Number of ids handed out so far, including merged ones; every id is below it. */
+    synchronized int capacity() {
+        return size;
+    }
+
+    /** The ids of the category list, in list order. */
+    synchronized int[] order() {
+        return order.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /** The category names in the order they were added. */
+    synchronized List<String> names() {
+        List<String> result = new ArrayList<>(order.size());
+        for (int id : order) {
+            result.add(names[id]);
+        }
+        return result;
+    }
+
+    /**
+     * Renames a category in place. Renaming onto an existing category merges
+     * the two instead.
+     */
+    synchronized void rename(String from, String to) {
+        Integer id = ids.get(from);
+        if (id == null || from.equals(to)) {
+            return;
+        }
+        if (ids.containsKey(to)) {
+            merge(from, to);
+            return;
+        }
+        ids.remove(from);
+        ids.put(to, id);
+        names[id] = to;
+    }
+
+    /**
+     * Moves every expense of one category into another, creating the target
+     * if needed, and removes the first category from the list. Only ids are
+     * redirected, so the cost depends on the number of categories, not rows.
+     * Returns the redirected ids, which restore() needs to undo the merge.
+     */
+    synchronized int[] merge(String from, String into) {
+        Integer fromId = ids.get(from);
+        if (fromId == null || from.equals(into)) {
+            return new int[0];
+        }
+        int intoId = intern(into);
+        int[] redirected = new int[size];
+        int count = 0;
+        for (int id = 0; id < size; id++) {
+            if (canonical[id] == fromId) {
+                canonical[id] = intoId;
+                redirected[count++] = id;
+            }
+        }
+        names[fromId] = null;
+        ids.remove(from);
+        order.remove(fromId);
+        return Arrays.copyOf(redirected, count);
+    }
+
+    /**
+     * Removes a category from the list without redirecting its id, to undo
+     * adding it. The id stays reserved so that restore() can bring it back.
+     */
+    synchronized void forget(int id) {
+        ids.remove(names[id]);
+        order.remove((Integer) id);
+        names[id] = null;
+    }
+
+    /**
+     * Puts a forgotten or merged-away category back under its old id at a
+     * position of the list, and points the given ids back at it. With the ids
+     * merge() returned, this undoes the merge.
+     */
+    synchronized void restore(int id, String name, int position, int[] redirected) {
+        names[id] = name;
+        canonical[id] = id;
+        for (int r : redirected) {
+            canonical[r] = id;
+        }
+        ids.put(name, id);
+        order.add(position, id);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,152 @@
+package expensetracker;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntConsumer;
+
+/**
+ * Streams the ledger to a UTF-8 CSV file. Rows are read straight from the
+ * ledger columns and written in chunks through one large buffer, with numbers
+ * and dates formatted by hand, so memory stays flat however many rows are
+ * exported. Progress is reported and cancellation checked between chunks.
+ */
+class CsvExporter {
+
+    static final String HEADER = "Amount,Category,Date,Note\n";
+
+    private static final int CHUNK_ROWS = 65_536;
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final Metrics.Timer EXPORT_TIMER = Metrics.timer("csv.export");
+    private static final Metrics.Counter ROWS_SCANNED = Metrics.counter("rows.scanned");
+
+    private final Ledger expenses;
+    private final char[] digits = new char[20];
+    private long startDay = Long.MIN_VALUE;
+    private long endDay = Long.MAX_VALUE;
+    private int categoryId = -1;
+
+    CsvExporter(Ledger expenses) {
+        this.expenses = expenses;
+    }
+
+    /** Restricts the export to expenses dated between the two days, inclusive. */
+    void setDateRange(long startDay, long endDay) {
+        this.startDay = startDay;
+        this.endDay = endDay;
+    }
+
+    /** Restricts the export to one category id, or to none if -1. */
+    void setCategoryId(int categoryId) {
+        this.categoryId = categoryId;
+    }
+
+    /**
+     * Writes the matching expenses to the file and returns how many were
+     * written. The progress callback receives the number of rows scanned so far.
+     *
+     * @throws CancellationException if cancelled returns true between chunks
+     */
+    int export(File file, IntConsumer progress, BooleanSupplier cancelled) throws IOException {
+        int written = 0;
+        Metrics.Sample sample = EXPORT_TIMER.start();
+        try (Writer out = new BufferedWriter(
+                new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8), BUFFER_SIZE)) {
+            out.write(HEADER);
+            int rows = expenses.size();
+            long[] amounts = new long[Math.min(rows, CHUNK_ROWS)];
+            int[] epochDays = new int[amounts.length];
+            int[] categoryIds = new int[amounts.length];
+            for (int chunkStart = 0; chunkStart < rows; chunkStart += CHUNK_ROWS) {
+                if (cancelled.getAsBoolean()) {
+                    throw new CancellationException();
+                }
+                int chunkEnd = Math.min(rows, chunkStart + CHUNK_ROWS);
+                expenses.readColumns(chunkStart, chunkEnd, amounts, epochDays, categoryIds);
+                for (int i = chunkStart; i < chunkEnd; i++) {
+                    int day = epochDays[i - chunkStart];
+                    if (day < startDay || day > endDay) {
+                        continue;
+                    }
+                    int rowCategoryId = expenses.categories().resolve(categoryIds[i - chunkStart]);
+                    if (categoryId >= 0 && categoryId != rowCategoryId) {
+                        continue;
+                    }
+                    writeAmount(out, amounts[i - chunkStart]);
+                    out.write(',');
+                    writeField(out, expenses.categories().name(rowCategoryId), false);
+                    out.write(',');
+                    writeDate(out, day);
+                    out.write(',');
+                    writeField(out, expenses.noteAt(i), true);
+                    out.write('\n');
+                    written++;
+                }
+                ROWS_SCANNED.add(chunkEnd - chunkStart);
+                progress.accept(chunkEnd);
+            }
+        } finally {
+            sample.close();
+        }
+        return written;
+    }
+
+    private void writeAmount(Writer out, long cents) throws IOException {
+        if (cents < 0) {
+            out.write('-');
+            cents = -cents;
+        }
+        writeNumber(out, cents / 100, 1);
+        out.write('.');
+        writeNumber(out, cents % 100, 2);
+    }
+
+    private void writeDate(Writer out, long epochDay) throws IOException {
+        LocalDate date = LocalDate.ofEpochDay(epochDay);
+        if (date.getYear() < 0 || date.getYear() > 9999) {
+            out.write(date.toString());
+            return;
+        }
+        writeNumber(out, date.getYear(), 4);
+        out.write('-');
+        writeNumber(out, date.getMonthValue(), 2);
+        out.write('-');
+        writeNumber(out, date.getDayOfMonth(), 2);
+    }
+
+    /** Writes a non-negative number left-padded with zeros to the given width. */
+    private void writeNumber(Writer out, long value, int width) throws IOException {
+        int position = digits.length;
+        do {
+            digits[--position] = (char) ('0' + value % 10);
+            value /= 10;
+        } while (value > 0);
+        while (digits.length - position < width) {
+            digits[--position] = '0';
+        }
+        out.write(digits, position, digits.length - position);
+    }
+
+    private static void writeField(Writer out, String value, boolean alwaysQuote) throws IOException {
+        if (value == null) {
+            value = "";
+        }
+        boolean quote = alwaysQuote || value.indexOf(',') >= 0 || value.indexOf('"') >= 0
+                || value.indexOf('\n') >= 0;
+        if (!quote) {
+            out.write(value);
+            return;
+        }
+        out.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                out.write('"');
+            }
+            out.write(c);
+        }
+        out.write('"');
+    }
+}
\ No newline at end of file
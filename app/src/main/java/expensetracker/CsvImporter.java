@@ -0,0 +1,332 @@
+package expensetracker;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Bulk CSV import, the counterpart of {@link CsvExporter}. The file is
+ * memory-mapped and cut into chunks at record boundaries in one quick pass,
+ * then the chunks are parsed and validated in parallel. Rows that fail
+ * validation are skipped and reported with their line number.
+ *
+ * The first line may be a header naming the Amount, Category, Date and Note
+ * columns in any order ("Description" and "Memo" are accepted for the note,
+ * as found in bank statements). Without a Category column every row goes to
+ * "Uncategorized"; without a header the exporter's column order is assumed.
+ *
+ * The importer has no access to the ledger's dictionary while it runs, so
+ * each batch interns its own category names and its expenses carry indexes
+ * into {@link Batch#categories} until they are committed.
+ */
+class CsvImporter {
+
+    /** The rows parsed from one chunk of the file. */
+    static final class Batch {
+        final List<Expense> expenses = new ArrayList<>();
+        /** Category names by the local id held in each expense. */
+        final List<String> categories = new ArrayList<>();
+        private final Map<String, Integer> categoryIds = new HashMap<>();
+
+        private int categoryId(String name) {
+            return categoryIds.computeIfAbsent(name, n -> {
+                categories.add(n);
+                return categories.size() - 1;
+            });
+        }
+    }
+
+    /** The rows that were parsed and the problems with the ones that were not. */
+    static final class Result {
+        final List<Batch> batches;
+        final List<String> errors;
+        final int errorCount;
+
+        Result(List<Batch> batches, List<String> errors, int errorCount) {
+            this.batches = batches;
+            this.errors = errors;
+            this.errorCount = errorCount;
+        }
+
+        int rowCount() {
+            return batches.stream().mapToInt(batch -> batch.expenses.size()).sum();
+        }
+    }
+
+    static final String DEFAULT_CATEGORY = "Uncategorized";
+
+    private static final int CHUNK_BYTES = 4 << 20;
+    private static final int MAX_REPORTED_ERRORS = 1000;
+    private static final Metrics.Timer PARSE_TIMER = Metrics.timer("csv.import");
+
+    private static final class Chunk {
+        final int start;
+        final int end;
+        final int firstLine;
+
+        Chunk(int start, int end, int firstLine) {
+            this.start = start;
+            this.end = end;
+            this.firstLine = firstLine;
+        }
+    }
+
+    private static final class ChunkResult {
+        final Batch batch = new Batch();
+        final List<String> errors = new ArrayList<>();
+        int errorCount;
+    }
+
+    // Column positions, -1 when the file has no such column
+    private int amountColumn = 0;
+    private int categoryColumn = 1;
+    private int dateColumn = 2;
+    private int noteColumn = 3;
+
+    Result parse(File file) throws IOException {
+        Metrics.Sample sample = PARSE_TIMER.start();
+        try {
+            MappedByteBuffer buffer;
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+
+            int dataStart = readHeader(buffer);
+            List<Chunk> chunks = split(buffer, dataStart, dataStart == 0 ? 1 : 2);
+            List<ChunkResult> results = IntStream.range(0, chunks.size()).parallel()
+                    .mapToObj(i -> parseChunk(buffer, chunks.get(i)))
+                    .collect(Collectors.toList());
+
+            List<Batch> batches = new ArrayList<>(results.size());
+            List<String> errors = new ArrayList<>();
+            int errorCount = 0;
+            for (ChunkResult result : results) {
+                batches.add(result.batch);
+                errorCount += result.errorCount;
+                for (String error : result.errors) {
+                    if (errors.size() < MAX_REPORTED_ERRORS) {
+                        errors.add(error);
+                    }
+                }
+            }
+            return new Result(batches, errors, errorCount);
+        } finally {
+            sample.close();
+        }
+    }
+
+    /** Maps the header's columns and returns where the data rows start. */
+    private int readHeader(MappedByteBuffer buffer) {
+        int end = 0;
+        while (end < buffer.limit() && buffer.get(end) != '\n') {
+            end++;
+        }
+        byte[] line = new byte[end];
+        buffer.get(0, line);
+        List<String> fields = new ArrayList<>();
+        parseRecord(line, 0, line.length, fields);
+        if (fields.isEmpty() || !fields.get(0).trim().matches("(?i)[a-z ]+")) {
+            return 0;
+        }
+
+        amountColumn = categoryColumn = dateColumn = noteColumn = -1;
+        for (int i = 0; i < fields.size(); i++) {
+            switch (fields.get(i).trim().toLowerCase(Locale.ROOT)) {
+                case "amount" -> amountColumn = i;
+                case "category" -> categoryColumn = i;
+                case "date" -> dateColumn = i;
+                case "note", "description", "memo" -> noteColumn = i;
+                default -> {
+                    // Extra columns are ignored
+                }
+            }
+        }
+        return Math.min(end + 1, buffer.limit());
+    }
+
+    /**
+     * Cuts the data into chunks of about CHUNK_BYTES that end on a newline
+     * outside quotes, counting lines on the way so that errors can name them.
+     */
+    private static List<Chunk> split(MappedByteBuffer buffer, int dataStart, int firstLine) {
+        List<Chunk> chunks = new ArrayList<>();
+        int chunkStart = dataStart;
+        int chunkLine = firstLine;
+        int line = firstLine;
+        boolean quoted = false;
+        for (int i = dataStart; i < buffer.limit(); i++) {
+            byte b = buffer.get(i);
+            if (b == '"') {
+                quoted = !quoted;
+            } else if (b == '\n') {
+                line++;
+                if (!quoted && i + 1 - chunkStart >= CHUNK_BYTES) {
+                    chunks.add(new Chunk(chunkStart, i + 1, chunkLine));
+                    chunkStart = i + 1;
+                    chunkLine = line;
+                }
+            }
+        }
+        if (chunkStart < buffer.limit()) {
+            chunks.add(new Chunk(chunkStart, buffer.limit(), chunkLine));
+        }
+        return chunks;
+    }
+
+    private ChunkResult parseChunk(MappedByteBuffer buffer, Chunk chunk) {
+        byte[] bytes = new byte[chunk.end - chunk.start];
+        buffer.get(chunk.start, bytes);
+
+        ChunkResult result = new ChunkResult();
+        List<String> fields = new ArrayList<>();
+        int position = 0;
+        int line = chunk.firstLine;
+        while (position < bytes.length) {
+            int recordLine = line;
+            int next = parseRecord(bytes, position, bytes.length, fields);
+            for (int i = position; i < next; i++) {
+                if (bytes[i] == '\n') {
+                    line++;
+                }
+            }
+            position = next;
+            if (fields.size() == 1 && fields.get(0).isBlank()) {
+                continue;
+            }
+            try {
+                result.batch.expenses.add(toExpense(fields, result.batch));
+            } catch (IllegalArgumentException e) {
+                result.errorCount++;
+                if (result.errors.size() < MAX_REPORTED_ERRORS) {
+                    result.errors.add("Line " + recordLine + ": " + e.getMessage());
+                }
+            }
+        }
+        return result;
+    }
+
+    private Expense toExpense(List<String> fields, Batch batch) {
+        String amountText = field(fields, amountColumn);
+        long amount;
+        try {
+            amount = Money.parse(amountText);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid amount '" + amountText + "'");
+        }
+        if (amount <= 0) {
+            throw new IllegalArgumentException("Amount must be a positive number");
+        }
+
+        String category = categoryColumn < 0 ? DEFAULT_CATEGORY : field(fields, categoryColumn).trim();
+        if (category.isEmpty()) {
+            throw new IllegalArgumentException("Category cannot be empty");
+        }
+
+        String dateText = field(fields, dateColumn).trim();
+        LocalDate date;
+        try {
+            date = parseDate(dateText);
+        } catch (DateTimeException e) {
+            throw new IllegalArgumentException("Invalid date '" + dateText + "', expected yyyy-MM-dd");
+        }
+        if (!Expense.isAcceptedDate(date)) {
+            throw new IllegalArgumentException("Date " + dateText + " is outside " + Expense.EARLIEST_DATE + " to "
+                    + Expense.LATEST_DATE);
+        }
+        return new Expense(amount, batch.categoryId(category), date, noteColumn < 0 ? "" : field(fields, noteColumn));
+    }
+
+    /** Parses yyyy-MM-dd by hand, which is several times cheaper than a DateTimeFormatter. */
+    private static LocalDate parseDate(String text) {
+        if (text.length() != 10 || text.charAt(4) != '-' || text.charAt(7) != '-') {
+            return LocalDate.parse(text);
+        }
+        return LocalDate.of(digits(text, 0, 4), digits(text, 5, 7), digits(text, 8, 10));
+    }
+
+    private static int digits(String text, int from, int to) {
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                throw new DateTimeException("Not a digit: " + c);
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static String field(List<String> fields, int column) {
+        if (column < 0) {
+            throw new IllegalArgumentException("Missing column");
+        }
+        if (column >= fields.size()) {
+            throw new IllegalArgumentException("Expected at least " + (column + 1) + " columns");
+        }
+        return fields.get(column);
+    }
+
+    /**
+     * Parses one record starting at from into fields and returns the offset
+     * just past its terminating newline. Quoted fields may contain commas,
+     * newlines and doubled quotes.
+     */
+    private static int parseRecord(byte[] bytes, int from, int to, List<String> fields) {
+        fields.clear();
+        int position = from;
+        while (true) {
+            if (position < to && bytes[position] == '"') {
+                StringBuilder value = new StringBuilder();
+                int segmentStart = ++position;
+                while (position < to) {
+                    if (bytes[position] == '"') {
+                        value.append(new String(bytes, segmentStart, position - segmentStart, StandardCharsets.UTF_8));
+                        if (position + 1 < to && bytes[position + 1] == '"') {
+                            value.append('"');
+                            position += 2;
+                            segmentStart = position;
+                            continue;
+                        }
+                        break;
+                    }
+                    position++;
+                }
+                if (position >= to) {
+                    value.append(new String(bytes, segmentStart, to - segmentStart, StandardCharsets.UTF_8));
+                }
+                fields.add(value.toString());
+                position++;
+                // Skip anything between the closing quote and the delimiter
+                while (position < to && bytes[position] != ',' && bytes[position] != '\n') {
+                    position++;
+                }
+            } else {
+                int start = position;
+                while (position < to && bytes[position] != ',' && bytes[position] != '\n') {
+                    position++;
+                }
+                int end = position > start && bytes[position - 1] == '\r' ? position - 1 : position;
+                fields.add(new String(bytes, start, end - start, StandardCharsets.UTF_8));
+            }
+            if (position >= to) {
+                return to;
+            }
+            if (bytes[position] == '\n') {
+                return position + 1;
+            }
+            position++; // Past the comma
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,77 @@
+package expensetracker;
+
+import javax.swing.table.AbstractTableModel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read-only table of the {@link Metrics}: one row per timer with its run
+ * count, latency percentiles in milliseconds and the bytes allocated per run,
+ * then one row per counter with only its value. The table shows the state of
+ * its last refresh().
+ */
+class DiagnosticsTableModel extends AbstractTableModel {
+
+    private static final long serialVersionUID = 1L;
+    private static final String[] COLUMNS = { "Metric", "Count", "Mean (ms)", "p50 (ms)", "p90 (ms)", "p99 (ms)",
+            "p99.9 (ms)", "Max (ms)", "Alloc/run (KB)" };
+    private static final double[] PERCENTILES = { 50, 90, 99, 99.9 };
+
+    private final List<Object[]> rows = new ArrayList<>();
+
+    /** Reads the current values of every timer and counter. */
+    void refresh() {
+        rows.clear();
+        for (Metrics.Timer timer : Metrics.timers()) {
+            Metrics.Distribution d = timer.distribution();
+            Object[] row = new Object[COLUMNS.length];
+            row[0] = timer.name;
+            row[1] = d.count;
+            if (d.count > 0) {
+                row[2] = Metrics.millis(d.mean());
+                for (int p = 0; p < PERCENTILES.length; p++) {
+                    row[3 + p] = Metrics.millis(d.percentile(PERCENTILES[p]));
+                }
+                row[7] = Metrics.millis(d.max);
+                row[8] = timer.allocatedBytes() / 1024.0 / d.count;
+            }
+            rows.add(row);
+        }
+        for (Metrics.Counter counter : Metrics.counters()) {
+            Object[] row = new Object[COLUMNS.length];
+            row[0] = counter.name;
+            row[1] = counter.get();
+            rows.add(row);
+        }
+        fireTableDataChanged();
+    }
+
+    @Override
+    public int getRowCount() {
+        return rows.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int columnIndex) {
+        return switch (columnIndex) {
+            case 0 -> String.class;
+            case 1 -> Long.class;
+            default -> Double.class;
+        };
+    }
+
+    @Override
+    public Object getValueAt(int rowIndex, int columnIndex) {
+        return rows.get(rowIndex)[columnIndex];
+    }
+}
\ No newline at end of file
@@ -0,0 +1,83 @@
+package expensetracker;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+/**
+ * Represents a single expense with amount, category, date, and an optional
+ * note. The amount is held in cents so that totals are exact, and the
+ * category as an id in the ledger's {@link CategoryDictionary}.
+ * This is a simple POJO (Plain Old Java Object), except for the rows that
+ * {@link Ledger#get} returns: those are read-only views of the ledger's
+ * columns.
+ */
+class Expense implements Serializable {
+    /** The range of dates accepted from input; a date outside it is taken for a typo or a placeholder. */
+    static final LocalDate EARLIEST_DATE = LocalDate.of(1900, 1, 1);
+    static final LocalDate LATEST_DATE = LocalDate.of(2199, 12, 31);
+
+    private long amountCents;
+    private int categoryId;
+    private LocalDate date;
+    private String note;
+
+    public Expense(long amountCents, int categoryId, LocalDate date, String note) {
+        this.amountCents = amountCents;
+        this.categoryId = categoryId;
+        this.date = date;
+        this.note = note;
+    }
+
+    /** For the row views of {@link Ledger}, which override every getter and setter. */
+    Expense() {
+    }
+
+    // Getters and Setters
+    public long getAmountCents() {
+        return amountCents;
+    }
+
+    public void setAmountCents(long amountCents) {
+        this.amountCents = amountCents;
+    }
+
+    public int getCategoryId() {
+        return categoryId;
+    }
+
+    public void setCategoryId(int categoryId) {
+        this.categoryId = categoryId;
+    }
+
+    public LocalDate getDate() {
+        return date;
+    }
+
+    public void setDate(LocalDate date) {
+        this.date = date;
+    }
+
+    /** Returns true if a date falls between EARLIEST_DATE and LATEST_DATE. */
+    static boolean isAcceptedDate(LocalDate date) {
+        return !date.isBefore(EARLIEST_DATE) && !date.isAfter(LATEST_DATE);
+    }
+
+    /** The date as a day count, which a ledger row has without creating a LocalDate. */
+    public long getEpochDay() {
+        return date.toEpochDay();
+    }
+
+    public String getNote() {
+        return note;
+    }
+
+    public void setNote(String note) {
+        this.note = note;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%-10s #%-14d %-15s %s", Money.format(getAmountCents()), getCategoryId(),
+                getDate().toString(), getNote());
+    }
+}
\ No newline at end of file
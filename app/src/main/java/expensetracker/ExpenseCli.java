@@ -0,0 +1,299 @@
+package expensetracker;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Command line entry point for batch jobs such as a nightly import, report
+ * and export. It works on the same data files as the desktop application
+ * through {@link ExpenseStore} and never initializes AWT, so it runs on
+ * machines without a display.
+ */
+class ExpenseCli {
+
+    private static final String USAGE = String.join("\n",
+            "Usage: java -jar expense-tracker-<version>.jar [--data <dir> | --workspace <dir> [--ledger <name>]]",
+            "       <command> [options]",
+            "",
+            "Commands:",
+            "  import <file.csv>                  Append the expenses in a CSV file",
+            "  export <file.csv> [--from <date>] [--to <date>] [--category <name>]",
+            "                                     Write the matching expenses to a CSV file",
+            "  report [--from <date>] [--to <date>]",
+            "                                     Print the total and the totals by category",
+            "  trend [--from <date>] [--to <date>] [--by day|week|month|year]",
+            "                                     Print spending per category and period",
+            "                                     (default: the last 12 months)",
+            "  recurring                          Add the recurring expenses due up to today",
+            "  ledgers                            List the ledgers of a workspace",
+            "  rollup [--from <date>] [--to <date>]",
+            "                                     Print the totals by ledger and category",
+            "                                     over every ledger of a workspace",
+            "  help                               Show this message",
+            "",
+            "Dates are yyyy-MM-dd. --data selects the directory holding the data files",
+            "(default: the working directory). --workspace selects a directory of ledgers",
+            "instead, and --ledger the one the other commands work on; a new name creates",
+            "a ledger. --metrics <file> writes the timings of the run to a file, as the",
+            "Diagnostics tab exports them. import exits with status 1 if any row was",
+            "skipped. Without arguments the desktop application starts.");
+
+    private final PrintStream out;
+    private final PrintStream err;
+    private File directory;
+    private File workspaceDirectory;
+    private String ledger;
+    private LocalDate from;
+    private LocalDate to;
+    private String category;
+    private ReportEngine.Interval interval = ReportEngine.Interval.MONTH;
+    private File metricsFile;
+
+    private ExpenseCli(PrintStream out, PrintStream err) {
+        this.out = out;
+        this.err = err;
+    }
+
+    /** Runs one command and returns the process exit status. */
+    static int run(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        ExpenseCli cli = new ExpenseCli(System.out, System.err);
+        int status = cli.execute(args);
+        if (cli.metricsFile != null) {
+            try {
+                Metrics.export(cli.metricsFile);
+            } catch (IOException e) {
+                cli.err.println("Error writing metrics: " + e.getMessage());
+                return Math.max(status, 1);
+            }
+        }
+        return status;
+    }
+
+    private int execute(String[] args) {
+        List<String> operands = new ArrayList<>();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--data" -> directory = new File(value(args, ++i));
+                    case "--workspace" -> workspaceDirectory = new File(value(args, ++i));
+                    case "--ledger" -> ledger = value(args, ++i);
+                    case "--from" -> from = LocalDate.parse(value(args, ++i));
+                    case "--to" -> to = LocalDate.parse(value(args, ++i));
+                    case "--category" -> category = value(args, ++i);
+                    case "--by" -> interval = interval(value(args, ++i));
+                    case "--metrics" -> metricsFile = new File(value(args, ++i));
+                    default -> operands.add(args[i]);
+                }
+            }
+        } catch (IllegalArgumentException | DateTimeException e) {
+            err.println(e.getMessage());
+            return 2;
+        }
+        if (operands.isEmpty() || operands.get(0).equals("help")) {
+            out.println(USAGE);
+            return operands.isEmpty() ? 2 : 0;
+        }
+
+        String command = operands.get(0);
+        boolean takesFile = command.equals("import") || command.equals("export");
+        boolean workspaceCommand = command.equals("ledgers") || command.equals("rollup");
+        if (!takesFile && !workspaceCommand && !command.equals("report") && !command.equals("trend")
+                && !command.equals("recurring")) {
+            err.println("Unknown command: " + command);
+            err.println(USAGE);
+            return 2;
+        }
+        if (operands.size() != (takesFile ? 2 : 1)) {
+            err.println(USAGE);
+            return 2;
+        }
+        String misuse = null;
+        if (directory != null && (workspaceDirectory != null || ledger != null)) {
+            misuse = "--data cannot be combined with --workspace or --ledger";
+        } else if (workspaceCommand && (workspaceDirectory == null || ledger != null)) {
+            misuse = command + " needs --workspace and no --ledger";
+        } else if (!workspaceCommand && (workspaceDirectory == null) != (ledger == null)) {
+            misuse = command + " needs both --workspace and --ledger, or neither";
+        }
+        if (misuse != null) {
+            err.println(misuse);
+            return 2;
+        }
+
+        if (workspaceDirectory != null) {
+            try (Workspace workspace = Workspace.open(workspaceDirectory)) {
+                return switch (command) {
+                    case "ledgers" -> ledgers(workspace);
+                    case "rollup" -> rollUp(workspace);
+                    default -> workspace.withLedger(ledger, store -> execute(command, operands, store));
+                };
+            } catch (IOException e) {
+                err.println("Error: " + e.getMessage());
+                return 1;
+            } catch (IllegalArgumentException e) {
+                err.println(e.getMessage());
+                return 2;
+            }
+        }
+        try (ExpenseStore store = ExpenseStore.open(directory)) {
+            return execute(command, operands, store);
+        } catch (IOException e) {
+            err.println("Error: " + e.getMessage());
+            return 1;
+        }
+    }
+
+    private int execute(String command, List<String> operands, ExpenseStore store) throws IOException {
+        return switch (command) {
+            case "import" -> importCsv(store, new File(operands.get(1)));
+            case "export" -> exportCsv(store, new File(operands.get(1)));
+            case "trend" -> trend(store);
+            case "recurring" -> recurring(store);
+            default -> report(store);
+        };
+    }
+
+    private int importCsv(ExpenseStore store, File file) throws IOException {
+        CsvImporter.Result result = new CsvImporter().parse(file);
+        store.importRows(result);
+        out.println("Imported " + result.rowCount() + " expenses from " + file);
+        if (result.errorCount == 0) {
+            return 0;
+        }
+        err.println(result.errorCount + " rows were skipped:");
+        result.errors.forEach(err::println);
+        return 1;
+    }
+
+    private int exportCsv(ExpenseStore store, File file) throws IOException {
+        CsvExporter exporter = new CsvExporter(store.expenses());
+        exporter.setDateRange(from == null ? Long.MIN_VALUE : from.toEpochDay(),
+                to == null ? Long.MAX_VALUE : to.toEpochDay());
+        if (category != null) {
+            int categoryId = store.categories().id(category);
+            if (categoryId < 0) {
+                err.println("Unknown category: " + category);
+                return 1;
+            }
+            exporter.setCategoryId(categoryId);
+        }
+        int written = exporter.export(file, rows -> { }, () -> false);
+        out.println("Exported " + written + " expenses to " + file);
+        return 0;
+    }
+
+    private int report(ExpenseStore store) {
+        printReport(new ReportEngine(store).compute(from == null ? LocalDate.MIN : from,
+                to == null ? LocalDate.MAX : to));
+        return 0;
+    }
+
+    private int ledgers(Workspace workspace) {
+        workspace.ledgerNames().forEach(out::println);
+        return 0;
+    }
+
+    private int rollUp(Workspace workspace) {
+        Workspace.RollUp rollUp = workspace.rollUp(from == null ? LocalDate.MIN : from,
+                to == null ? LocalDate.MAX : to);
+        printReport(rollUp.report);
+        out.println("By ledger:");
+        double percent = rollUp.report.total == 0 ? 0 : 100.0 / rollUp.report.total;
+        for (int i = 0; i < rollUp.ledgers.length; i++) {
+            out.println(String.format("  %-30s %14s %7.2f%% %10d expenses", rollUp.ledgers[i],
+                    Money.format(rollUp.ledgerTotals[i]), rollUp.ledgerTotals[i] * percent, rollUp.ledgerCounts[i]));
+        }
+        return 0;
+    }
+
+    private void printReport(ReportEngine.Report report) {
+        out.println("--- Summary for " + (from == null ? "the beginning" : from) + " to "
+                + (to == null ? "the end" : to) + " ---");
+        out.println("Expenses: " + report.count);
+        out.println("Total: " + Money.format(report.total));
+        double percent = report.total == 0 ? 0 : 100.0 / report.total;
+        for (int i = 0; i < report.categories.length; i++) {
+            out.println(String.format("  %-30s %14s %7.2f%%", report.categories[i],
+                    Money.format(report.categoryTotals[i]), report.categoryTotals[i] * percent));
+        }
+    }
+
+    private int trend(ExpenseStore store) {
+        LocalDate end = to == null ? LocalDate.now() : to;
+        LocalDate start = from == null ? interval.start(end).minus(11, interval.unit) : from;
+        ReportEngine.Trend trend;
+        try {
+            trend = new ReportEngine(store).trend(start, end, interval);
+        } catch (IllegalArgumentException e) {
+            err.println(e.getMessage());
+            return 2;
+        }
+
+        int buckets = trend.totals.length;
+        String[][] cells = new String[trend.categories.length + 2][buckets + 2];
+        cells[0][0] = "Category";
+        cells[1][0] = "Total";
+        for (int k = 0; k < buckets; k++) {
+            cells[0][k + 1] = trend.label(k);
+        }
+        cells[0][buckets + 1] = "Total";
+        fillRow(cells[1], trend.totals);
+        for (int c = 0; c < trend.categories.length; c++) {
+            cells[c + 2][0] = trend.categories[c];
+            fillRow(cells[c + 2], trend.categoryTotals[c]);
+        }
+
+        int[] widths = new int[buckets + 2];
+        for (String[] row : cells) {
+            for (int column = 0; column < row.length; column++) {
+                widths[column] = Math.max(widths[column], row[column].length());
+            }
+        }
+        out.println("--- Spending by " + interval.toString().toLowerCase() + " from " + start + " to " + end + " ---");
+        for (String[] row : cells) {
+            StringBuilder line = new StringBuilder(String.format("%-" + widths[0] + "s", row[0]));
+            for (int column = 1; column < row.length; column++) {
+                line.append(String.format("  %" + widths[column] + "s", row[column]));
+            }
+            out.println(line);
+        }
+        return 0;
+    }
+
+    private int recurring(ExpenseStore store) {
+        int added = store.materializeRecurring(LocalDate.now());
+        out.println("Added " + added + " recurring expenses from " + store.rules().size() + " rules");
+        return 0;
+    }
+
+    private static void fillRow(String[] row, long[] amounts) {
+        long total = 0;
+        for (int k = 0; k < amounts.length; k++) {
+            row[k + 1] = Money.format(amounts[k]);
+            total += amounts[k];
+        }
+        row[amounts.length + 1] = Money.format(total);
+    }
+
+    private static ReportEngine.Interval interval(String name) {
+        for (ReportEngine.Interval interval : ReportEngine.Interval.values()) {
+            if (interval.toString().equalsIgnoreCase(name)) {
+                return interval;
+            }
+        }
+        throw new IllegalArgumentException("Unknown interval: " + name);
+    }
+
+    private static String value(String[] args, int i) {
+        if (i >= args.length) {
+            throw new IllegalArgumentException("Missing value for " + args[i - 1]);
+        }
+        return args[i];
+    }
+}
\ No newline at end of file
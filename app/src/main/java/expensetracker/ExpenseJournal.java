@@ -0,0 +1,862 @@
+package expensetracker;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only write-ahead journal of expense, category and recurring rule
+ * changes.
+ * Every mutation is encoded as one small checksummed record. Records are
+ * buffered in memory and a background thread writes and fsyncs them in groups,
+ * so a crash loses at most the last commit window. Each snapshot records the
+ * journal generation and offset it covers; once it is safely written, the
+ * journal moves on to the next generation, keeping only the records made
+ * after that offset, so a crash at any point replays exactly the changes the
+ * snapshot lacks. Categories are journaled by name,
+ * except in budgets, which are kept by id, and in the records that undo and
+ * redo changes: those put rows and categories back exactly as they were,
+ * merged ids included, so they write dictionary ids, which snapshots keep.
+ */
+class ExpenseJournal implements Closeable {
+
+    /** Receives replayed records in the order they were written. */
+    interface Handler {
+        void onAdd(Expense expense);
+
+        void onUpdate(int index, Expense expense);
+
+        void onDelete(int index);
+
+        void onAddCategory(String category);
+
+        void onRemoveCategory(String category);
+
+        void onRenameCategory(String from, String to);
+
+        void onPutRule(RecurringRule rule);
+
+        void onRemoveRule(int id);
+
+        /** Occurrences of each rule up to counts[i] were added; see {@link RecurringRule#occurrences}. */
+        void onMaterialize(int[] ruleIds, int[] counts);
+
+        /** An expense was inserted at an index, for example to undo its deletion. */
+        void onInsert(int index, Expense expense);
+
+        void onDeleteRange(int index, int count);
+
+        /** Rows were inserted at an index in one step, as an import does. */
+        void onInsertRows(int index, List<Expense> rows);
+
+        /** A category that nothing used was removed from the list; its id stays reserved. */
+        void onForgetCategory(int id);
+
+        /** See {@link CategoryDictionary#restore}. */
+        void onRestoreCategory(int id, String category, int position, int[] redirected);
+
+        /** A monthly limit was set for a dictionary id or {@link Budgets#OVERALL}; 0 removes it. */
+        void onSetBudget(int key, long limitCents);
+    }
+
+    private static final int MAGIC = 0x4558504A; // "EXPJ"
+    private static final int VERSION = 3;
+    private static final int HEADER_SIZE = 16;
+
+    private static final byte OP_ADD = 1;
+    private static final byte OP_UPDATE = 2;
+    private static final byte OP_DELETE = 3;
+    private static final byte OP_ADD_CATEGORY = 4;
+    private static final byte OP_REMOVE_CATEGORY = 5;
+    private static final byte OP_RENAME_CATEGORY = 6;
+    private static final byte OP_PUT_RULE = 7;
+    private static final byte OP_REMOVE_RULE = 8;
+    private static final byte OP_MATERIALIZE = 9;
+    private static final byte OP_INSERT = 10;
+    private static final byte OP_UPDATE_ROW = 11;
+    private static final byte OP_DELETE_RANGE = 12;
+    private static final byte OP_FORGET_CATEGORY = 13;
+    private static final byte OP_RESTORE_CATEGORY = 14;
+    private static final byte OP_SET_BUDGET = 15;
+    private static final byte OP_INSERT_ROWS = 16;
+    private static final byte OP_INSERT_MAPPED_ROWS = 17;
+
+    // Rows per insert record, so that no record or its buffers grow with the size of an import
+    static final int ROWS_PER_RECORD = 1 << 13;
+
+    // A pending buffer grown past this, by an import, is dropped after the flush rather than kept
+    private static final int RETAINED_BUFFER_BYTES = 1 << 20;
+
+    private static final Metrics.Timer FLUSH_TIMER = Metrics.timer("journal.flush");
+
+    private final File file;
+    // Guarded by writeLock
+    private FileChannel channel;
+    private final CategoryDictionary categories;
+    private final ScheduledExecutorService flusher;
+    private final Object writeLock = new Object();
+
+    // Guarded by this
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    // Guarded by writeLock: the buffer the last flush wrote out, taken as the next pending buffer
+    private ByteArrayOutputStream spare = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream record = new ByteArrayOutputStream();
+    private final DataOutputStream recordOut = new DataOutputStream(record);
+    private final CRC32 crc = new CRC32();
+    private int recordCount;
+    private long generation;
+    // The file's length once every pending record is written
+    private long length;
+
+    private ExpenseJournal(File file, FileChannel channel, CategoryDictionary categories, long generation,
+            int recordCount, long length, long commitWindowMillis) {
+        this.file = file;
+        this.channel = channel;
+        this.categories = categories;
+        this.generation = generation;
+        this.recordCount = recordCount;
+        this.length = length;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "expense-journal");
+            t.setDaemon(true);
+            return t;
+        });
+        flusher.scheduleWithFixedDelay(this::flushQuietly, commitWindowMillis, commitWindowMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Replays the records of the journal that a snapshot lacks into the
+     * handler, drops a torn tail left by a crash, and opens the journal for
+     * appending. The snapshot covers the given generation up to the given
+     * offset: records of that generation after the offset, and all of the
+     * next generation, are replayed; older generations are already in the
+     * snapshot and are dropped. A journal of a still later generation belongs
+     * to a newer snapshot than the one loaded, which happens when a damaged
+     * snapshot was rolled back, so it is kept aside as .rejected rather than
+     * replayed onto the wrong rows. A record that does not apply, such as one
+     * naming a row the ledger does not have, ends the replay like a torn tail,
+     * after a copy of the journal is kept as .corrupt. A journal written by
+     * an older version is replayed whole and rewritten in the current format.
+     * Category names in replayed expenses are interned into the given
+     * dictionary.
+     */
+    static ExpenseJournal open(File file, CategoryDictionary categories, Handler handler, long commitWindowMillis,
+            long generation, long offset) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(file.exists() ? Files.readAllBytes(file.toPath()) : new byte[0]);
+        int version = 0;
+        long journalGeneration = 0;
+        if (buffer.remaining() >= 8 && buffer.getInt() == MAGIC) {
+            version = buffer.getInt();
+            if (version == VERSION) {
+                journalGeneration = buffer.remaining() >= Long.BYTES ? buffer.getLong() : -1;
+            }
+        }
+
+        if (version == VERSION && journalGeneration > generation + 1) {
+            Files.move(file.toPath(), new File(file.getPath() + ".rejected").toPath(),
+                    StandardCopyOption.REPLACE_EXISTING);
+            System.out.println("Kept " + file + " as .rejected: it continues a newer snapshot than the one loaded");
+        } else if (version == VERSION && journalGeneration >= generation
+                && (journalGeneration > generation || offset <= buffer.limit())) {
+            if (journalGeneration == generation && offset > HEADER_SIZE) {
+                buffer.position((int) offset);
+            }
+            int replayed = 0;
+            long validLength = buffer.position();
+            while (replayNext(file, buffer, categories, handler, version)) {
+                validLength = buffer.position();
+                replayed++;
+            }
+            FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+            channel.truncate(validLength);
+            channel.position(validLength);
+            channel.force(true);
+            return new ExpenseJournal(file, channel, categories, journalGeneration, replayed, validLength,
+                    commitWindowMillis);
+        }
+
+        // Start the next generation next to the old journal and swap it in once any old records are carried over
+        File tempFile = new File(file.getPath() + ".tmp");
+        FileChannel channel = FileChannel.open(tempFile.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        channel.write(header(generation + 1));
+        ExpenseJournal journal = new ExpenseJournal(file, channel, categories, generation + 1, 0, HEADER_SIZE,
+                commitWindowMillis);
+        if (version == 1 || version == 2) {
+            Handler upgrade = journal.forwardingTo(handler);
+            while (replayNext(file, buffer, categories, upgrade, version)) {
+                // Each record is applied and re-journaled by the upgrade handler
+            }
+            journal.flush();
+        }
+        channel.force(true);
+        Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        return journal;
+    }
+
+    /** Returns a handler that applies each record and also appends it to this journal. */
+    private Handler forwardingTo(Handler handler) {
+        return new Handler() {
+            public void onAdd(Expense expense) {
+                handler.onAdd(expense);
+                recordAdd(expense);
+            }
+
+            public void onUpdate(int index, Expense expense) {
+                handler.onUpdate(index, expense);
+                recordUpdate(index, expense);
+            }
+
+            public void onDelete(int index) {
+                handler.onDelete(index);
+                recordDelete(index);
+            }
+
+            public void onAddCategory(String category) {
+                handler.onAddCategory(category);
+                recordAddCategory(category);
+            }
+
+            public void onRemoveCategory(String category) {
+                handler.onRemoveCategory(category);
+                recordRemoveCategory(category);
+            }
+
+            public void onRenameCategory(String from, String to) {
+                handler.onRenameCategory(from, to);
+                recordRenameCategory(from, to);
+            }
+
+            public void onPutRule(RecurringRule rule) {
+                handler.onPutRule(rule);
+                recordPutRule(rule);
+            }
+
+            public void onRemoveRule(int id) {
+                handler.onRemoveRule(id);
+                recordRemoveRule(id);
+            }
+
+            public void onMaterialize(int[] ruleIds, int[] counts) {
+                handler.onMaterialize(ruleIds, counts);
+                recordMaterialize(ruleIds, counts);
+            }
+
+            public void onInsert(int index, Expense expense) {
+                handler.onInsert(index, expense);
+                recordInsert(index, expense);
+            }
+
+            public void onDeleteRange(int index, int count) {
+                handler.onDeleteRange(index, count);
+                recordDeleteRange(index, count);
+            }
+
+            public void onInsertRows(int index, List<Expense> rows) {
+                handler.onInsertRows(index, rows);
+                recordInsertRows(index, rows);
+            }
+
+            public void onForgetCategory(int id) {
+                handler.onForgetCategory(id);
+                recordForgetCategory(id);
+            }
+
+            public void onRestoreCategory(int id, String category, int position, int[] redirected) {
+                handler.onRestoreCategory(id, category, position, redirected);
+                recordRestoreCategory(id, category, position, redirected);
+            }
+
+            public void onSetBudget(int key, long limitCents) {
+                handler.onSetBudget(key, limitCents);
+                recordSetBudget(key, limitCents);
+            }
+        };
+    }
+
+    /**
+     * Replays the next record, or returns false at the end, at a torn or
+     * damaged record, or at one that does not apply to the rows, such as one
+     * with an index past the end. The journal then does not fit the snapshot,
+     * so a copy of it is kept aside as .corrupt before the caller drops the
+     * records from there on.
+     */
+    private static boolean replayNext(File file, ByteBuffer buffer, CategoryDictionary categories, Handler handler,
+            int version) throws IOException {
+        int start = buffer.position();
+        try {
+            return replayRecord(buffer, categories, handler, version);
+        } catch (RuntimeException e) {
+            Files.copy(file.toPath(), new File(file.getPath() + ".corrupt").toPath(),
+                    StandardCopyOption.REPLACE_EXISTING);
+            System.out.println("Stopped replaying " + file + " at offset " + start + " (" + e
+                    + "); kept a copy as .corrupt");
+            return false;
+        }
+    }
+
+    private static boolean replayRecord(ByteBuffer buffer, CategoryDictionary categories, Handler handler,
+            int version) {
+        if (buffer.remaining() < 4) {
+            return false;
+        }
+        int length = buffer.getInt();
+        if (length <= 0 || buffer.remaining() < length + 4) {
+            return false;
+        }
+        byte[] body = new byte[length];
+        buffer.get(body);
+        CRC32 checksum = new CRC32();
+        checksum.update(body);
+        if ((int) checksum.getValue() != buffer.getInt()) {
+            return false;
+        }
+
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(body))) {
+            switch (in.readByte()) {
+                case OP_ADD -> handler.onAdd(readExpense(in, categories, version));
+                case OP_UPDATE -> handler.onUpdate(in.readInt(), readExpense(in, categories, version));
+                case OP_DELETE -> handler.onDelete(in.readInt());
+                case OP_ADD_CATEGORY -> handler.onAddCategory(readString(in));
+                case OP_REMOVE_CATEGORY -> handler.onRemoveCategory(readString(in));
+                case OP_RENAME_CATEGORY -> handler.onRenameCategory(readString(in), readString(in));
+                case OP_PUT_RULE -> handler.onPutRule(readRule(in, categories));
+                case OP_REMOVE_RULE -> handler.onRemoveRule(in.readInt());
+                case OP_MATERIALIZE -> {
+                    int[] ruleIds = new int[in.readInt()];
+                    int[] counts = new int[ruleIds.length];
+                    for (int i = 0; i < ruleIds.length; i++) {
+                        ruleIds[i] = in.readInt();
+                        counts[i] = in.readInt();
+                    }
+                    handler.onMaterialize(ruleIds, counts);
+                }
+                case OP_INSERT -> handler.onInsert(in.readInt(), readRow(in));
+                case OP_UPDATE_ROW -> handler.onUpdate(in.readInt(), readRow(in));
+                case OP_DELETE_RANGE -> handler.onDeleteRange(in.readInt(), in.readInt());
+                case OP_FORGET_CATEGORY -> handler.onForgetCategory(in.readInt());
+                case OP_RESTORE_CATEGORY -> {
+                    int id = in.readInt();
+                    String category = readString(in);
+                    int position = in.readInt();
+                    int[] redirected = new int[in.readInt()];
+                    for (int i = 0; i < redirected.length; i++) {
+                        redirected[i] = in.readInt();
+                    }
+                    handler.onRestoreCategory(id, category, position, redirected);
+                }
+                case OP_SET_BUDGET -> handler.onSetBudget(in.readInt(), in.readLong());
+                case OP_INSERT_ROWS -> {
+                    int index = in.readInt();
+                    int count = in.readInt();
+                    List<Expense> rows = new ArrayList<>();
+                    for (int i = 0; i < count; i++) {
+                        rows.add(readRow(in));
+                    }
+                    handler.onInsertRows(index, rows);
+                }
+                case OP_INSERT_MAPPED_ROWS -> {
+                    int index = in.readInt();
+                    int[] categoryIds = new int[in.readInt()];
+                    for (int i = 0; i < categoryIds.length; i++) {
+                        categoryIds[i] = in.readInt();
+                    }
+                    int count = in.readInt();
+                    List<Expense> rows = new ArrayList<>(count);
+                    for (int i = 0; i < count; i++) {
+                        Expense expense = readRow(in);
+                        expense.setCategoryId(categoryIds[expense.getCategoryId()]);
+                        rows.add(expense);
+                    }
+                    handler.onInsertRows(index, rows);
+                }
+                default -> {
+                    return false;
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    synchronized void recordAdd(Expense expense) {
+        try {
+            recordOut.writeByte(OP_ADD);
+            writeExpense(recordOut, expense);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        commitRecord();
+    }
+
+    synchronized void recordUpdate(int index, Expense expense) {
+        try {
+            recordOut.writeByte(OP_UPDATE);
+            recordOut.writeInt(index);
+            writeExpense(recordOut, expense);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        commitRecord();
+    }
+
+    synchronized void recordDelete(int index) {
+        try {
+            recordOut.writeByte(OP_DELETE);
+            recordOut.writeInt(index);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        commitRecord();
+    }
+
+    synchronized void recordAddCategory(String category) {
+        try {
+            recordOut.writeByte(OP_ADD_CATEGORY);
+            writeString(recordOut, category);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        commitRecord();
+    }
+
+    synchronized void recordRemoveCategory(String category) {
+        try {
+            recordOut.writeByte(OP_REMOVE_CATEGORY);
+            writeString(recordOut, category);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        commitRecord();
+    }
+
+    synchronized void recordRenameCategory(String from, String to) {
+        try {
+            recordOut.writeByte(OP_RENAME_CATEGORY);
+            writeString(recordOut, from);
+            writeString(recordOut, to);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        commitRecord();
+    }
+
+    synchronized void recordPutRule(RecurringRule rule) {
+        try {
+            recordOut.writeByte(OP_PUT_RULE);
+            recordOut.writeInt(rule.id);
+            recordOut.writeLong(rule.amountCents);
+            writeString(recordOut, categories.name(rule.categoryId));
+            recordOut.writeByte(rule.interval.ordinal());
+            recordOut.writeInt(rule.every);
+            recordOut.writeLong(rule.startDate.toEpochDay());
+            recordOut.writeLong(rule.endDate == null ? Long.MAX_VALUE : rule.endDate.toEpochDay());
+            recordOut.writeInt(rule.generated);
+            writeString(recordOut, rule.note);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        commitRecord();
+    }
+
+    synchronized void recordRemoveRule(int id) {
+        try {
+            recordOut.writeByte(OP_REMOVE_RULE);
+            recordOut.writeInt(id);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        commitRecord();
+    }
+
+    /**
+     * Records that occurrences were added, as rule ids and counts only: replay
+     * regenerates the rows, so one small record covers any number of them.
+     */
+    synchronized void recordMaterialize(int[] ruleIds, int[] counts) {
+        try {
+            recordOut.writeByte(OP_MATERIALIZE);
+            recordOut.writeInt(ruleIds.length);
+            for (int i = 0; i < ruleIds.length; i++) {
+                recordOut.writeInt(ruleIds[i]);
+                recordOut.writeInt(counts[i]);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        commitRecord();
+    }
+
+    /** Records an insert; the expense keeps its dictionary id, which may have been merged away. */
+    synchronized void recordInsert(int index, Expense expense) {
+        try {
+            recordOut.writeByte(OP_INSERT);
+            recordOut.writeInt(index);
+            writeRow(recordOut, expense);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        commitRecord();
+    }
+
+    /** Like recordUpdate(), but keeps the expense's dictionary id as recordInsert() does. */
+    synchronized void recordUpdateRow(int index, Expense expense) {
+        try {
+            recordOut.writeByte(OP_UPDATE_ROW);
+            recordOut.writeInt(index);
+            writeRow(recordOut, expense);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        commitRecord();
+    }
+
+    synchronized void recordDeleteRange(int index, int count) {
+        try {
+            recordOut.writeByte(OP_DELETE_RANGE);
+            recordOut.writeInt(index);
+            recordOut.writeInt(count);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        commitRecord();
+    }
+
+    /**
+     * Records rows inserted at an index, ROWS_PER_RECORD to a record. After
+     * a crash while they were written, replay adds the rows of the records
+     * before the tear. Rows keep their dictionary ids, as in recordInsert().
+     */
+    synchronized void recordInsertRows(int index, List<Expense> rows) {
+        // Built apart from the shared record buffer, which would otherwise keep the size of the largest record
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(body);
+        for (int from = 0; from < rows.size(); from += ROWS_PER_RECORD) {
+            List<Expense> part = rows.subList(from, Math.min(rows.size(), from + ROWS_PER_RECORD));
+            try {
+                out.writeByte(OP_INSERT_ROWS);
+                out.writeInt(index + from);
+                out.writeInt(part.size());
+                for (Expense expense : part) {
+                    writeRow(out, expense);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            commitRecord(body.toByteArray());
+            body.reset();
+        }
+    }
+
+    /** Rows encoded by encodeRows() ahead of being journaled. */
+    static final class EncodedRows {
+        final int count;
+        private final byte[] bytes;
+
+        private EncodedRows(int count, byte[] bytes) {
+            this.count = count;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * Encodes rows for recordInsertRows(int, int[], EncodedRows),
+     * ROWS_PER_RECORD to a record. No lock is needed: the rows keep the ids
+     * they have now, such as the ids into an import batch's own category
+     * list, and are mapped onto the dictionary when they are recorded.
+     */
+    static List<EncodedRows> encodeRows(List<Expense> rows) {
+        List<EncodedRows> records = new ArrayList<>();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(body);
+        for (int from = 0; from < rows.size(); from += ROWS_PER_RECORD) {
+            List<Expense> part = rows.subList(from, Math.min(rows.size(), from + ROWS_PER_RECORD));
+            try {
+                out.writeInt(part.size());
+                for (Expense expense : part) {
+                    writeRow(out, expense);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            records.add(new EncodedRows(part.size(), body.toByteArray()));
+            body.reset();
+        }
+        return records;
+    }
+
+    /**
+     * Records encoded rows inserted at an index. A row's category id i
+     * stands for categoryIds[i] in the dictionary.
+     */
+    synchronized void recordInsertRows(int index, int[] categoryIds, EncodedRows rows) {
+        try {
+            recordOut.writeByte(OP_INSERT_MAPPED_ROWS);
+            recordOut.writeInt(index);
+            recordOut.writeInt(categoryIds.length);
+            for (int id : categoryIds) {
+                recordOut.writeInt(id);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        byte[] head = record.toByteArray();
+        record.reset();
+        commitRecord(head, rows.bytes);
+    }
+
+    synchronized void recordForgetCategory(int id) {
+        try {
+            recordOut.writeByte(OP_FORGET_CATEGORY);
+            recordOut.writeInt(id);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        commitRecord();
+    }
+
+    synchronized void recordRestoreCategory(int id, String category, int position, int[] redirected) {
+        try {
+            recordOut.writeByte(OP_RESTORE_CATEGORY);
+            recordOut.writeInt(id);
+            writeString(recordOut, category);
+            recordOut.writeInt(position);
+            recordOut.writeInt(redirected.length);
+            for (int r : redirected) {
+                recordOut.writeInt(r);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        commitRecord();
+    }
+
+    synchronized void recordSetBudget(int key, long limitCents) {
+        try {
+            recordOut.writeByte(OP_SET_BUDGET);
+            recordOut.writeInt(key);
+            recordOut.writeLong(limitCents);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        commitRecord();
+    }
+
+    /** Number of records written since the last snapshot. */
+    synchronized int getRecordCount() {
+        return recordCount;
+    }
+
+    /** Writes and fsyncs every pending record. */
+    void flush() throws IOException {
+        synchronized (writeLock) {
+            ByteArrayOutputStream batch;
+            synchronized (this) {
+                if (pending.size() == 0) {
+                    return;
+                }
+                // Swapped rather than copied, so changes keep queueing while the batch is written
+                batch = pending;
+                pending = spare;
+            }
+            Metrics.Sample sample = FLUSH_TIMER.start();
+            try {
+                batch.writeTo(Channels.newOutputStream(channel));
+                channel.force(false);
+            } finally {
+                sample.close();
+                if (batch.size() > RETAINED_BUFFER_BYTES) {
+                    spare = new ByteArrayOutputStream();
+                } else {
+                    batch.reset();
+                    spare = batch;
+                }
+            }
+        }
+    }
+
+    synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Returns the journal's length, pending records included: the offset up
+     * to which a snapshot taken now covers it. The owner must keep records
+     * from being added until the snapshot's copy is taken. Nothing is
+     * written, so the owner's lock is not held over the disk: the records
+     * before the offset are in the snapshot, and a journal found shorter
+     * than a snapshot's offset on loading only lacks records the snapshot
+     * has, so it is started over.
+     */
+    synchronized long mark() {
+        return length;
+    }
+
+    /**
+     * Moves on to the next generation once a snapshot covering this one up to
+     * offset has been written: the records from offset on, which were added
+     * while the snapshot was being written, are copied into a new file that
+     * atomically replaces the journal. records is the number of records
+     * before offset. The copy is made holding only writeLock, which keeps
+     * the flusher away from the channel: changes keep adding records to the
+     * pending buffer meanwhile, and those go to the new file with the next
+     * flush.
+     */
+    void dropBefore(long offset, int records) throws IOException {
+        synchronized (writeLock) {
+            flush();
+            ByteBuffer tail = ByteBuffer.allocate(Math.toIntExact(channel.position() - offset));
+            while (tail.hasRemaining()) {
+                channel.read(tail, offset + tail.position());
+            }
+            tail.flip();
+            long nextGeneration = getGeneration() + 1;
+            File tempFile = new File(file.getPath() + ".tmp");
+            FileChannel next = FileChannel.open(tempFile.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            try {
+                next.write(header(nextGeneration));
+                while (tail.hasRemaining()) {
+                    next.write(tail);
+                }
+                next.force(true);
+                Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                next.close();
+                throw e;
+            }
+            channel.close();
+            channel = next;
+            synchronized (this) {
+                generation = nextGeneration;
+                recordCount -= records;
+                length -= offset - HEADER_SIZE;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        flusher.shutdown();
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (IOException e) {
+            System.out.println("Error writing journal: " + e.getMessage());
+        }
+    }
+
+    private static ByteBuffer header(long generation) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION).putLong(generation);
+        header.flip();
+        return header;
+    }
+
+    // Frames the record built in recordOut as [length][body][crc32] and queues it.
+    private void commitRecord() {
+        byte[] body = record.toByteArray();
+        record.reset();
+        commitRecord(body);
+    }
+
+    // Frames a record whose body is the given parts, in order, straight into the pending buffer.
+    private void commitRecord(byte[]... body) {
+        crc.reset();
+        int size = 0;
+        for (byte[] part : body) {
+            crc.update(part);
+            size += part.length;
+        }
+        writeInt(pending, size);
+        for (byte[] part : body) {
+            pending.write(part, 0, part.length);
+        }
+        writeInt(pending, (int) crc.getValue());
+        recordCount++;
+        length += size + 8;
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, int value) {
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
+
+    private void writeExpense(DataOutputStream out, Expense expense) throws IOException {
+        out.writeLong(expense.getAmountCents());
+        writeString(out, categories.name(expense.getCategoryId()));
+        out.writeLong(expense.getEpochDay());
+        writeString(out, expense.getNote());
+    }
+
+    private static Expense readExpense(DataInputStream in, CategoryDictionary categories, int version)
+            throws IOException {
+        // Version 1 journaled amounts as doubles
+        long amount = version == 1 ? Math.round(in.readDouble() * 100) : in.readLong();
+        int categoryId = categories.intern(readString(in));
+        LocalDate date = LocalDate.ofEpochDay(in.readLong());
+        String note = readString(in);
+        return new Expense(amount, categoryId, date, note);
+    }
+
+    private static void writeRow(DataOutputStream out, Expense expense) throws IOException {
+        out.writeLong(expense.getAmountCents());
+        out.writeInt(expense.getCategoryId());
+        out.writeLong(expense.getEpochDay());
+        writeString(out, expense.getNote());
+    }
+
+    private static Expense readRow(DataInputStream in) throws IOException {
+        return new Expense(in.readLong(), in.readInt(), LocalDate.ofEpochDay(in.readLong()), readString(in));
+    }
+
+    private static RecurringRule readRule(DataInputStream in, CategoryDictionary categories) throws IOException {
+        int id = in.readInt();
+        long amount = in.readLong();
+        int categoryId = categories.intern(readString(in));
+        ReportEngine.Interval interval = ReportEngine.Interval.values()[in.readByte()];
+        int every = in.readInt();
+        LocalDate startDate = LocalDate.ofEpochDay(in.readLong());
+        long endDay = in.readLong();
+        int generated = in.readInt();
+        String note = readString(in);
+        return new RecurringRule(id, amount, categoryId, note, interval, every, startDate,
+                endDay == Long.MAX_VALUE ? null : LocalDate.ofEpochDay(endDay), generated);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = (value == null ? "" : value).getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
\ No newline at end of file
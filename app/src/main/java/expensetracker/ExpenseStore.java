@@ -0,0 +1,1148 @@
+package expensetracker;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * The expense data and every operation on it, with no dependency on Swing.
+ * The store loads the ledger snapshot from its directory, replays the
+ * journal, sums the aggregate index on a background thread and keeps it up
+ * to date, and journals each change.
+ * It also holds the recurring expense rules, which are saved with the
+ * categories in the ledger file, the monthly {@link Budgets}, which it checks
+ * after every change, and an {@link UndoHistory} of the changes made through
+ * it. Undoing or redoing a change is journaled like any other
+ * change. The desktop UI and the command line both go through it.
+ * <p>
+ * Snapshots are written in the background, every half minute while there
+ * are changes and whenever the journal grows long, from a copy taken under
+ * the store's lock, so changes wait only for the copy, not for the disk.
+ * No file is read or written while the lock is held.
+ * The previous snapshot is kept as a backup and loaded instead if the latest
+ * one turns out to be damaged. Only the snapshot's header is checked when it
+ * is loaded; its rows are checked on the writer thread afterwards, and the
+ * first save waits for that.
+ * <p>
+ * Any thread may change the store. Changes are serialized on the store, and
+ * each one updates the aggregate index in a single step under the index's
+ * lock, so reports always see whole changes. Threads that read rows take a
+ * {@link #snapshot()} instead of reading expenses(), which only the thread
+ * that owns the store (the event dispatch thread in the UI) may read
+ * directly.
+ */
+class ExpenseStore implements Closeable {
+
+    /**
+     * Occurrences of recurring rules that are due, generated ahead of time so
+     * that applying them is a single append. Each rule's occurrences up to
+     * counts[i] are included.
+     */
+    static final class RecurringBatch {
+        final List<RecurringRule> rules;
+        final int[] counts;
+        final List<Expense> expenses;
+
+        RecurringBatch(List<RecurringRule> rules, int[] counts, List<Expense> expenses) {
+            this.rules = rules;
+            this.counts = counts;
+            this.expenses = expenses;
+        }
+    }
+
+    static final String UNCATEGORIZED = "Uncategorized";
+
+    private static final String FILE_NAME = "expenses.ledger";
+    private static final String LEGACY_FILE_NAME = "expenses.dat";
+    private static final String JOURNAL_FILE_NAME = "expenses.journal";
+    private static final long JOURNAL_COMMIT_WINDOW_MS = 100;
+    private static final int JOURNAL_COMPACT_THRESHOLD = 10_000;
+    private static final String BACKUP_SUFFIX = ".bak";
+    private static final String CORRUPT_SUFFIX = ".corrupt";
+    private static final long AUTOSAVE_INTERVAL_SECONDS = 30;
+    private static final Metrics.Timer LOAD_TIMER = Metrics.timer("store.load");
+    private static final Metrics.Timer SNAPSHOT_TIMER = Metrics.timer("store.snapshot");
+    private static final Metrics.Timer SAVE_TIMER = Metrics.timer("store.save");
+
+    // Writes the snapshots of every open store, one at a time
+    private static final ScheduledExecutorService SNAPSHOT_WRITER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "expense-snapshot");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final File directory;
+    private Ledger expenses = new Ledger();
+    private CategoryDictionary categories = expenses.categories();
+    private ExpenseJournal journal;
+    private AggregateIndex aggregates;
+    private final Map<Integer, RecurringRule> rules = new LinkedHashMap<>();
+    private int nextRuleId;
+    private int materializedSinceSnapshot;
+    private final UndoHistory history = new UndoHistory();
+    private Budgets budgets;
+    private Consumer<List<Budgets.Alert>> budgetListener;
+    private ScheduledFuture<?> autosave;
+    // Guarded by this: a snapshot is being written, one is queued, the store is closed
+    private boolean saving;
+    private boolean snapshotRequested;
+    private boolean closed;
+    // Guarded by this: the loaded snapshot's rows are being checked, or turned out damaged
+    private boolean verifying;
+    private boolean damaged;
+    // Guarded by this: the last snapshot saved and the ledger over its file, until expenses is rebased onto it
+    private Ledger savedSnapshot;
+    private Ledger savedFile;
+
+    private ExpenseStore(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Opens the store kept in a directory, or in the working directory if
+     * directory is null, converting a legacy expenses.dat if that is all
+     * there is.
+     */
+    static ExpenseStore open(File directory) {
+        ExpenseStore store = new ExpenseStore(directory);
+        Metrics.Sample sample = LOAD_TIMER.start();
+        try {
+            store.loadData();
+        } finally {
+            sample.close();
+        }
+        store.autosave = SNAPSHOT_WRITER.scheduleWithFixedDelay(store::autosave, AUTOSAVE_INTERVAL_SECONDS,
+                AUTOSAVE_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        return store;
+    }
+
+    Ledger expenses() {
+        return expenses;
+    }
+
+    CategoryDictionary categories() {
+        return categories;
+    }
+
+    AggregateIndex aggregates() {
+        return aggregates;
+    }
+
+    /**
+     * Returns true once the aggregate index is built. Until then reports and
+     * budget statuses wait for it, so the event dispatch thread asks for them
+     * only once this holds, or from {@link #whenIndexed}.
+     */
+    boolean isIndexed() {
+        return aggregates.isReady();
+    }
+
+    /** Runs an action once the aggregate index is built: at once if it is, else on the thread that built it. */
+    void whenIndexed(Runnable action) {
+        aggregates.whenReady(action);
+    }
+
+    /** Roughly estimates the heap the store holds, for {@link Workspace} to page ledgers by. */
+    synchronized long heapBytes() {
+        return expenses.heapBytes() + aggregates.heapBytes();
+    }
+
+    // Expenses
+
+    /** Returns a consistent copy of the rows for reading on another thread. */
+    synchronized Ledger snapshot() {
+        return expenses.snapshot();
+    }
+
+    /** Appends an expense and returns its index. */
+    synchronized int add(long amountCents, String category, LocalDate date, String note) {
+        Expense expense = new Expense(amountCents, categories.intern(category), date, note);
+        int index = expenses.size();
+        expenses.add(expense);
+        aggregates.add(date.toEpochDay(), expense.getCategoryId(), amountCents);
+        budgets.record(date.toEpochDay(), expense.getCategoryId(), amountCents);
+        logChange(j -> j.recordAdd(expense));
+        history.record(new RowChange(UndoHistory.Change.Kind.ADD, "Add Expense", index, expense));
+        checkBudgets();
+        return index;
+    }
+
+    /** Replaces an expense; snapshots taken earlier keep the old one. */
+    synchronized void update(int index, long amountCents, String category, LocalDate date, String note) {
+        Expense expense = new Expense(amountCents, categories.intern(category), date, note);
+        Expense previous = replaceRow(index, expense);
+        logChange(j -> j.recordUpdate(index, expense));
+        history.record(new UpdateChange(index, previous, expense));
+        checkBudgets();
+    }
+
+    synchronized Expense delete(int index) {
+        Expense removed = removeRow(index);
+        history.record(new RowChange(UndoHistory.Change.Kind.DELETE, "Delete Expense", index, removed));
+        checkBudgets();
+        return removed;
+    }
+
+    /**
+     * Appends imported expenses batch by batch, creating missing categories
+     * and mapping each batch's category ids onto the dictionary. The rows are
+     * encoded for the journal before the lock is taken, in records of a
+     * bounded number of rows that keep their batch's ids, so the lock is held
+     * only to apply them and to queue the records with each batch's mapping.
+     * A snapshot is queued on the writer thread so that the journal stays
+     * short. Returns the index of the first imported row.
+     */
+    int importRows(CsvImporter.Result result) {
+        List<List<ExpenseJournal.EncodedRows>> records = new ArrayList<>(result.batches.size());
+        for (CsvImporter.Batch batch : result.batches) {
+            records.add(ExpenseJournal.encodeRows(batch.expenses));
+        }
+        return importRows(result, records);
+    }
+
+    private synchronized int importRows(CsvImporter.Result result, List<List<ExpenseJournal.EncodedRows>> records) {
+        int firstRow = expenses.size();
+        int firstCategoryId = categories.capacity();
+        int firstCategoryPosition = categories.names().size();
+        int[][] batchCategoryIds = new int[result.batches.size()][];
+        for (int b = 0; b < batchCategoryIds.length; b++) {
+            CsvImporter.Batch batch = result.batches.get(b);
+            int[] categoryIds = new int[batch.categories.size()];
+            for (int i = 0; i < categoryIds.length; i++) {
+                categoryIds[i] = categories.intern(batch.categories.get(i));
+            }
+            for (Expense expense : batch.expenses) {
+                expense.setCategoryId(categoryIds[expense.getCategoryId()]);
+            }
+            batchCategoryIds[b] = categoryIds;
+        }
+        // Reports see the whole import or none of it
+        synchronized (aggregates) {
+            for (CsvImporter.Batch batch : result.batches) {
+                for (Expense expense : batch.expenses) {
+                    aggregates.add(expense.getEpochDay(), expense.getCategoryId(),
+                            expense.getAmountCents());
+                    budgets.record(expense.getEpochDay(), expense.getCategoryId(),
+                            expense.getAmountCents());
+                }
+                expenses.addAll(batch.expenses);
+            }
+        }
+        String[] created = new String[categories.capacity() - firstCategoryId];
+        for (int k = 0; k < created.length; k++) {
+            String category = categories.entry(firstCategoryId + k);
+            created[k] = category;
+            logChange(j -> j.recordAddCategory(category));
+        }
+        if (expenses.size() > firstRow) {
+            int rowCount = expenses.size() - firstRow;
+            int index = firstRow;
+            for (int b = 0; b < batchCategoryIds.length; b++) {
+                int[] categoryIds = batchCategoryIds[b];
+                for (ExpenseJournal.EncodedRows rows : records.get(b)) {
+                    int rowIndex = index;
+                    logChange(j -> j.recordInsertRows(rowIndex, categoryIds, rows));
+                    index += rows.count;
+                }
+            }
+            requestSnapshot();
+            history.record(new ImportChange(firstRow, rowCount, firstCategoryId, firstCategoryPosition, created));
+            checkBudgets();
+        }
+        return firstRow;
+    }
+
+    private void insertRow(int index, Expense expense) {
+        expenses.add(index, expense);
+        aggregates.add(expense.getEpochDay(), expense.getCategoryId(), expense.getAmountCents());
+        budgets.record(expense.getEpochDay(), expense.getCategoryId(), expense.getAmountCents());
+        logChange(j -> j.recordInsert(index, expense));
+    }
+
+    /** Replaces a row and updates the index; the caller journals the change. */
+    private Expense replaceRow(int index, Expense expense) {
+        Expense previous = expenses.set(index, expense);
+        synchronized (aggregates) {
+            aggregates.remove(previous.getEpochDay(), previous.getCategoryId(), previous.getAmountCents());
+            aggregates.add(expense.getEpochDay(), expense.getCategoryId(), expense.getAmountCents());
+        }
+        budgets.record(previous.getEpochDay(), previous.getCategoryId(), -previous.getAmountCents());
+        budgets.record(expense.getEpochDay(), expense.getCategoryId(), expense.getAmountCents());
+        return previous;
+    }
+
+    private Expense removeRow(int index) {
+        Expense removed = expenses.remove(index);
+        aggregates.remove(removed.getEpochDay(), removed.getCategoryId(), removed.getAmountCents());
+        budgets.record(removed.getEpochDay(), removed.getCategoryId(), -removed.getAmountCents());
+        logChange(j -> j.recordDelete(index));
+        return removed;
+    }
+
+    // Categories
+
+    /** Adds a category; returns false if the name is empty or already taken. */
+    synchronized boolean addCategory(String category) {
+        if (category.isEmpty() || categories.contains(category)) {
+            return false;
+        }
+        int id = categories.intern(category);
+        logChange(j -> j.recordAddCategory(category));
+        history.record(new AddCategoryChange(id, category, categories.position(category)));
+        return true;
+    }
+
+    /**
+     * Adds the categories that are missing, such as those a new ledger of a
+     * workspace starts with, without recording an undoable change.
+     */
+    synchronized void addCategories(Collection<String> names) {
+        for (String category : names) {
+            if (!categories.contains(category)) {
+                categories.intern(category);
+                logChange(j -> j.recordAddCategory(category));
+            }
+        }
+    }
+
+    /**
+     * Renames a category. Renaming onto an existing category merges the two;
+     * returns true in that case.
+     */
+    synchronized boolean renameCategory(String from, String to) {
+        boolean merging = categories.contains(to);
+        if (!categories.contains(from) || from.equals(to)) {
+            return merging;
+        }
+        if (merging) {
+            history.record(mergeCategory(from, to, false));
+        } else {
+            categories.rename(from, to);
+            logChange(j -> j.recordRenameCategory(from, to));
+            history.record(new RenameChange(from, to));
+        }
+        return merging;
+    }
+
+    /**
+     * Removes a category and moves its expenses to "Uncategorized". Returns
+     * true if "Uncategorized" has to be (re)added to the category lists.
+     */
+    synchronized boolean removeCategory(String category) {
+        boolean added = !categories.contains(UNCATEGORIZED) || category.equals(UNCATEGORIZED);
+        if (categories.contains(category) && !category.equals(UNCATEGORIZED)) {
+            history.record(mergeCategory(category, UNCATEGORIZED, true));
+        }
+        return added;
+    }
+
+    /**
+     * Merges one category into another, creating the target if needed, and
+     * returns the change that undoes it. Only dictionary ids are redirected,
+     * however many expenses the category has.
+     */
+    private MergeChange mergeCategory(String from, String into, boolean removal) {
+        int fromId = categories.id(from);
+        int position = categories.position(from);
+        boolean created = !categories.contains(into);
+        int intoPosition = categories.names().size();
+        int[] redirected = categories.merge(from, into);
+        MergeChange change = new MergeChange(from, into, removal, fromId, position, redirected,
+                created ? categories.id(into) : -1, intoPosition);
+        change.journal();
+        return change;
+    }
+
+    /**
+     * Removes a category from the list to undo adding it, unless expenses or
+     * rules that the undo history does not cover use it by now, as recurring
+     * expenses may. Returns true if it was removed.
+     */
+    private boolean forgetCategory(int id) {
+        if (aggregates.count(id) > 0) {
+            return false;
+        }
+        for (RecurringRule rule : rules.values()) {
+            if (categories.resolve(rule.categoryId) == id) {
+                return false;
+            }
+        }
+        categories.forget(id);
+        logChange(j -> j.recordForgetCategory(id));
+        return true;
+    }
+
+    private void restoreCategory(int id, String category, int position, int[] redirected) {
+        categories.restore(id, category, position, redirected);
+        logChange(j -> j.recordRestoreCategory(id, category, position, redirected));
+    }
+
+    // Undo
+
+    /** Undoes the last change and returns it, or returns null if there is nothing to undo. */
+    synchronized UndoHistory.Change undo() {
+        UndoHistory.Change change = history.undo();
+        checkBudgets();
+        return change;
+    }
+
+    /** Redoes the last undone change and returns it, or returns null if there is nothing to redo. */
+    synchronized UndoHistory.Change redo() {
+        UndoHistory.Change change = history.redo();
+        checkBudgets();
+        return change;
+    }
+
+    /** Describes the change undo() would undo, such as "Delete Expense", or returns null. */
+    synchronized String undoDescription() {
+        UndoHistory.Change change = history.nextUndo();
+        return change == null ? null : change.description;
+    }
+
+    /** Describes the change redo() would redo, or returns null. */
+    synchronized String redoDescription() {
+        UndoHistory.Change change = history.nextRedo();
+        return change == null ? null : change.description;
+    }
+
+    /** Adding or deleting one expense; undoing either is redoing the other. */
+    private final class RowChange extends UndoHistory.Change {
+        private final Expense expense;
+
+        RowChange(Kind kind, String description, int index, Expense expense) {
+            super(kind, description, index, 1);
+            this.expense = expense;
+        }
+
+        @Override
+        void undo() {
+            apply(kind == Kind.DELETE);
+        }
+
+        @Override
+        void redo() {
+            apply(kind == Kind.ADD);
+        }
+
+        private void apply(boolean insert) {
+            if (insert) {
+                insertRow(firstRow, expense);
+            } else {
+                removeRow(firstRow);
+            }
+        }
+    }
+
+    /** An edit, kept as the row before and after it; rows are immutable, so these are not copies. */
+    private final class UpdateChange extends UndoHistory.Change {
+        private final Expense before;
+        private final Expense after;
+
+        UpdateChange(int index, Expense before, Expense after) {
+            super(Kind.UPDATE, "Edit Expense", index, 1);
+            this.before = before;
+            this.after = after;
+        }
+
+        @Override
+        void undo() {
+            replaceRow(firstRow, before);
+            logChange(j -> j.recordUpdateRow(firstRow, before));
+        }
+
+        @Override
+        void redo() {
+            replaceRow(firstRow, after);
+            logChange(j -> j.recordUpdateRow(firstRow, after));
+        }
+    }
+
+    /**
+     * An import, kept as the range of imported rows and the categories it
+     * created, which got consecutive ids at the end of the list. Undoing
+     * moves the rows into a ledger of their own, for redoing, and removes the
+     * range with a single journal record; redoing journals them again as one
+     * record and queues a snapshot, as the import did.
+     */
+    private final class ImportChange extends UndoHistory.Change {
+        // The imported rows while the import is undone
+        private Ledger rows;
+        private final int firstCategoryId;
+        private final int firstCategoryPosition;
+        private final String[] createdCategories;
+        private final boolean[] forgotten;
+
+        ImportChange(int firstRow, int rowCount, int firstCategoryId, int firstCategoryPosition,
+                String[] createdCategories) {
+            super(Kind.ADD, "Import", firstRow, rowCount);
+            this.firstCategoryId = firstCategoryId;
+            this.firstCategoryPosition = firstCategoryPosition;
+            this.createdCategories = createdCategories;
+            this.forgotten = new boolean[createdCategories.length];
+        }
+
+        @Override
+        void undo() {
+            synchronized (aggregates) {
+                for (int i = firstRow; i < firstRow + rowCount; i++) {
+                    aggregates.remove(expenses.epochDayAt(i), expenses.storedCategoryIdAt(i),
+                            expenses.amountCentsAt(i));
+                    budgets.record(expenses.epochDayAt(i), expenses.storedCategoryIdAt(i),
+                            -expenses.amountCentsAt(i));
+                }
+                rows = new Ledger(categories);
+                rows.addAll(expenses.subList(firstRow, firstRow + rowCount));
+                expenses.subList(firstRow, firstRow + rowCount).clear();
+            }
+            logChange(j -> j.recordDeleteRange(firstRow, rowCount));
+            for (int k = createdCategories.length - 1; k >= 0; k--) {
+                forgotten[k] = forgetCategory(firstCategoryId + k);
+            }
+        }
+
+        @Override
+        void redo() {
+            for (int k = 0; k < createdCategories.length; k++) {
+                if (forgotten[k]) {
+                    restoreCategory(firstCategoryId + k, createdCategories[k], firstCategoryPosition + k, new int[0]);
+                }
+            }
+            synchronized (aggregates) {
+                for (int i = 0; i < rows.size(); i++) {
+                    aggregates.add(rows.epochDayAt(i), rows.storedCategoryIdAt(i), rows.amountCentsAt(i));
+                    budgets.record(rows.epochDayAt(i), rows.storedCategoryIdAt(i), rows.amountCentsAt(i));
+                }
+                expenses.addAll(firstRow, rows);
+            }
+            Ledger redone = rows;
+            rows = null;
+            logChange(j -> j.recordInsertRows(firstRow, redone));
+            requestSnapshot();
+        }
+    }
+
+    private final class AddCategoryChange extends UndoHistory.Change {
+        private final int id;
+        private final String category;
+        private final int position;
+        private boolean forgotten;
+
+        AddCategoryChange(int id, String category, int position) {
+            super(Kind.CATEGORY, "Add Category", 0, 0);
+            this.id = id;
+            this.category = category;
+            this.position = position;
+        }
+
+        @Override
+        void undo() {
+            forgotten = forgetCategory(id);
+        }
+
+        @Override
+        void redo() {
+            if (forgotten) {
+                restoreCategory(id, category, position, new int[0]);
+            }
+        }
+    }
+
+    private final class RenameChange extends UndoHistory.Change {
+        private final String from;
+        private final String to;
+
+        RenameChange(String from, String to) {
+            super(Kind.CATEGORY, "Rename Category", 0, 0);
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        void undo() {
+            categories.rename(to, from);
+            logChange(j -> j.recordRenameCategory(to, from));
+        }
+
+        @Override
+        void redo() {
+            categories.rename(from, to);
+            logChange(j -> j.recordRenameCategory(from, to));
+        }
+    }
+
+    /**
+     * A removed category, or one renamed onto another, kept as the dictionary
+     * ids the merge redirected. Undoing points them back at the category and
+     * puts its name back in the list, which takes O(categories) whether the
+     * category had ten expenses or a million.
+     */
+    private final class MergeChange extends UndoHistory.Change {
+        private final String from;
+        private final String into;
+        private final boolean removal;
+        private final int fromId;
+        private final int position;
+        private final int[] redirected;
+        /** The id of the target if the merge created it, or -1. */
+        private final int createdId;
+        private final int createdPosition;
+        private boolean createdForgotten;
+
+        MergeChange(String from, String into, boolean removal, int fromId, int position, int[] redirected,
+                int createdId, int createdPosition) {
+            super(Kind.CATEGORY, removal ? "Remove Category" : "Rename Category", 0, 0);
+            this.from = from;
+            this.into = into;
+            this.removal = removal;
+            this.fromId = fromId;
+            this.position = position;
+            this.redirected = redirected;
+            this.createdId = createdId;
+            this.createdPosition = createdPosition;
+        }
+
+        @Override
+        void undo() {
+            restoreCategory(fromId, from, position, redirected);
+            createdForgotten = createdId >= 0 && forgetCategory(createdId);
+        }
+
+        @Override
+        void redo() {
+            if (createdForgotten) {
+                restoreCategory(createdId, into, createdPosition, new int[0]);
+            }
+            categories.merge(from, into);
+            journal();
+        }
+
+        void journal() {
+            if (removal) {
+                logChange(j -> j.recordRemoveCategory(from));
+            } else {
+                logChange(j -> j.recordRenameCategory(from, into));
+            }
+        }
+    }
+
+    // Budgets
+
+    /**
+     * Sets the monthly limit of a category, or of all expenses if category is
+     * null. A limit of 0 removes the budget. Returns false if there is no such
+     * category.
+     */
+    synchronized boolean setBudget(String category, long limitCents) {
+        int key = category == null ? Budgets.OVERALL : categories.id(category);
+        if (category != null && key < 0) {
+            return false;
+        }
+        budgets.setLimit(key, limitCents);
+        logChange(j -> j.recordSetBudget(key, limitCents));
+        return true;
+    }
+
+    /** Returns every budget with what was spent against it in the month of a day. */
+    synchronized List<Budgets.Status> budgetStatuses(LocalDate day) {
+        return budgets.statuses(aggregates, day);
+    }
+
+    /**
+     * Sets the listener that receives the alerts of each change that pushes a
+     * budget past a threshold. It is called on the changing thread with the
+     * store locked, so it should hand the alerts off rather than block.
+     */
+    synchronized void setBudgetListener(Consumer<List<Budgets.Alert>> listener) {
+        budgetListener = listener;
+    }
+
+    private void checkBudgets() {
+        List<Budgets.Alert> alerts = budgets.check(aggregates);
+        if (!alerts.isEmpty() && budgetListener != null) {
+            budgetListener.accept(alerts);
+        }
+    }
+
+    // Recurring expenses
+
+    synchronized List<RecurringRule> rules() {
+        return List.copyOf(rules.values());
+    }
+
+    /** Adds a rule; its occurrences are added by the next materialization. */
+    synchronized RecurringRule addRule(long amountCents, String category, String note, ReportEngine.Interval interval,
+            int every, LocalDate startDate, LocalDate endDate) {
+        RecurringRule rule = new RecurringRule(nextRuleId++, amountCents, categories.intern(category), note, interval,
+                every, startDate, endDate, 0);
+        rules.put(rule.id, rule);
+        logChange(j -> j.recordPutRule(rule));
+        return rule;
+    }
+
+    /** Removes a rule. Expenses it already added stay in the ledger. */
+    synchronized void removeRule(int id) {
+        if (rules.remove(id) != null) {
+            logChange(j -> j.recordRemoveRule(id));
+        }
+    }
+
+    /**
+     * Generates the occurrences due up to the given day, or returns null if
+     * there are none. Only a copy of the rules is read under the lock, so any
+     * thread can do the generating while the store is in use.
+     */
+    RecurringBatch planRecurring(LocalDate today) {
+        List<RecurringRule> current = rules();
+        List<RecurringRule> due = new ArrayList<>();
+        int[] counts = new int[current.size()];
+        for (RecurringRule rule : current) {
+            int count = rule.dueCount(today);
+            if (count > rule.generated) {
+                counts[due.size()] = count;
+                due.add(rule);
+            }
+        }
+        if (due.isEmpty()) {
+            return null;
+        }
+        counts = Arrays.copyOf(counts, due.size());
+        return new RecurringBatch(due, counts, RecurringRule.occurrences(due, counts));
+    }
+
+    /**
+     * Appends a planned batch in one step and journals it as a single record.
+     * Returns the index of the first added row, or -1 if a rule changed after
+     * the batch was planned, in which case it has to be planned again.
+     */
+    synchronized int applyRecurring(RecurringBatch batch) {
+        for (RecurringRule rule : batch.rules) {
+            if (rules.get(rule.id) != rule) {
+                return -1;
+            }
+        }
+        int firstRow = expenses.size();
+        synchronized (aggregates) {
+            for (Expense expense : batch.expenses) {
+                aggregates.add(expense.getEpochDay(), expense.getCategoryId(), expense.getAmountCents());
+                budgets.record(expense.getEpochDay(), expense.getCategoryId(), expense.getAmountCents());
+            }
+            expenses.addAll(batch.expenses);
+        }
+        int[] ruleIds = new int[batch.rules.size()];
+        for (int i = 0; i < ruleIds.length; i++) {
+            ruleIds[i] = batch.rules.get(i).id;
+            rules.put(ruleIds[i], batch.rules.get(i).withGenerated(batch.counts[i]));
+        }
+        logChange(j -> j.recordMaterialize(ruleIds, batch.counts));
+        materializedSinceSnapshot += batch.expenses.size();
+        checkBudgets();
+        return firstRow;
+    }
+
+    /**
+     * Queues a snapshot if the journal would regenerate many recurring rows on
+     * replay. The batch is already journaled, so the snapshot can come later.
+     */
+    synchronized void compactRecurring() {
+        if (materializedSinceSnapshot >= JOURNAL_COMPACT_THRESHOLD) {
+            requestSnapshot();
+        }
+    }
+
+    /** Plans and applies every due occurrence on the calling thread; returns how many were added. */
+    synchronized int materializeRecurring(LocalDate today) {
+        RecurringBatch batch = planRecurring(today);
+        if (batch == null) {
+            return 0;
+        }
+        applyRecurring(batch);
+        compactRecurring();
+        return batch.expenses.size();
+    }
+
+    // Persistence
+
+    /**
+     * Writes a snapshot if anything changed since the last one and closes the
+     * journal, so a read-only session leaves the ledger file untouched.
+     */
+    @Override
+    public void close() {
+        if (autosave != null) {
+            autosave.cancel(false);
+        }
+        boolean changed;
+        synchronized (this) {
+            changed = journal == null || journal.getRecordCount() > 0;
+        }
+        if (changed) {
+            saveData();
+        }
+        synchronized (this) {
+            awaitSave();
+            closed = true;
+        }
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                System.out.println("Error closing journal: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Writes a snapshot of the store as it is now. Only taking the copy holds
+     * the store's lock; the file is written and the journal moved on to its
+     * next generation without it, so other threads keep changing the store
+     * meanwhile, and their changes stay in the journal for the next snapshot.
+     * Callers must not hold the lock; code that does queues a snapshot with
+     * requestSnapshot() instead. Saves never overlap: a second one waits for
+     * the first.
+     */
+    void saveData() {
+        File file = file(FILE_NAME);
+        LedgerFile.Snapshot snapshot;
+        long offset = 0;
+        int records = 0;
+        boolean keepBackup;
+        synchronized (this) {
+            awaitSave();
+            keepBackup = damaged;
+            if (closed) {
+                return;
+            }
+            // Changes wait for this part only, which touches no file
+            Metrics.Sample sample = SNAPSHOT_TIMER.start();
+            try {
+                if (journal != null) {
+                    offset = journal.mark();
+                    records = journal.getRecordCount();
+                }
+                snapshot = new LedgerFile.Snapshot(expenses, rules.values(), budgets.limits(),
+                        journal != null ? journal.getGeneration() : 0, offset);
+            } finally {
+                sample.close();
+            }
+            materializedSinceSnapshot = 0;
+            snapshotRequested = false;
+            saving = true;
+        }
+        Metrics.Sample sample = SAVE_TIMER.start();
+        try {
+            // The rows in memory came from a damaged file, so the backup is kept as it is
+            LedgerFile.write(file, snapshot, keepBackup ? null : file(FILE_NAME + BACKUP_SUFFIX));
+            if (journal != null) {
+                journal.dropBefore(offset, records);
+            }
+            Ledger saved = LedgerFile.read(file).expenses;
+            synchronized (this) {
+                savedSnapshot = snapshot.expenses;
+                savedFile = saved;
+            }
+            System.out.println("Data saved to " + file);
+        } catch (IOException e) {
+            System.out.println("Error saving data: " + e.getMessage());
+        } finally {
+            sample.close();
+            synchronized (this) {
+                saving = false;
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Waits, with the store's lock released, until no snapshot is being
+     * written and the loaded one has been checked.
+     */
+    private void awaitSave() {
+        boolean interrupted = false;
+        while (saving || verifying) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Queues a snapshot on the writer thread, unless one is queued or being written already. */
+    private void requestSnapshot() {
+        if (!snapshotRequested && !saving && !closed) {
+            snapshotRequested = true;
+            SNAPSHOT_WRITER.execute(this::autosave);
+        }
+    }
+
+    /** Writes a snapshot if anything changed since the last one. */
+    private void autosave() {
+        synchronized (this) {
+            snapshotRequested = false;
+            if (closed || journal == null || journal.getRecordCount() == 0) {
+                return;
+            }
+        }
+        try {
+            saveData();
+        } catch (RuntimeException e) {
+            // Keep the schedule alive; the journal still holds every change
+            System.out.println("Error saving data: " + e);
+        }
+    }
+
+    /**
+     * Loads the snapshot, or the backup of the one before it if the snapshot
+     * is damaged or was never moved into place. A damaged file is kept aside
+     * as .corrupt rather than overwritten by the next save.
+     */
+    private void loadData() {
+        File file = file(FILE_NAME);
+        File backup = file(FILE_NAME + BACKUP_SUFFIX);
+        File legacyFile = file(LEGACY_FILE_NAME);
+        LedgerFile.Contents contents = null;
+        File source = file;
+        boolean lost = false;
+        if (file.exists()) {
+            try {
+                contents = LedgerFile.read(file);
+                System.out.println("Data loaded from " + file);
+            } catch (IOException e) {
+                System.out.println("Error loading data: " + e.getMessage());
+                file.renameTo(file(FILE_NAME + CORRUPT_SUFFIX));
+                contents = readBackup(backup);
+                source = backup;
+                lost = contents == null;
+            }
+        } else if (backup.exists()) {
+            // A crash between setting the old snapshot aside and moving the new one in
+            contents = readBackup(backup);
+            source = backup;
+            lost = contents == null;
+        } else if (legacyFile.exists()) {
+            try {
+                LedgerFile.Contents legacy = LedgerFile.readLegacy(legacyFile);
+                LedgerFile.write(file, legacy.expenses);
+                contents = LedgerFile.read(file);
+                legacyFile.renameTo(file(LEGACY_FILE_NAME + ".bak"));
+                System.out.println("Converted " + legacyFile + " to " + file);
+            } catch (IOException | ClassNotFoundException e) {
+                System.out.println("Error loading data: " + e.getMessage());
+            }
+        } else {
+            System.out.println("No existing data file found. Starting with an empty list.");
+        }
+        if (contents != null) {
+            expenses = contents.expenses;
+            categories = contents.categories;
+            contents.rules.forEach(this::putRule);
+            budgets = new Budgets(categories);
+            contents.budgets.forEach(budgets::setLimit);
+            LedgerFile.Contents loaded = contents;
+            File loadedFile = source;
+            verifying = true;
+            SNAPSHOT_WRITER.execute(() -> verifySnapshot(loaded, loadedFile));
+        } else {
+            budgets = new Budgets(categories);
+        }
+        if (lost && file(JOURNAL_FILE_NAME).exists()) {
+            // The journal only makes sense on top of a snapshot
+            file(JOURNAL_FILE_NAME).renameTo(file(JOURNAL_FILE_NAME + CORRUPT_SUFFIX));
+            System.out.println("No usable snapshot; kept the journal aside. Starting with an empty list.");
+        }
+        openJournal(contents != null ? contents.journalGeneration : 0, contents != null ? contents.journalOffset : 0);
+        aggregates = AggregateIndex.building(expenses.snapshot());
+        aggregates.whenReady(this::indexBuilt);
+    }
+
+    /**
+     * Checks the rows of the loaded snapshot against their checksum, which
+     * reads all of them. Damage is reported and the file copied aside as
+     * .corrupt; the rows already loaded stay, but saves no longer replace
+     * the backup, which may be the last good snapshot.
+     */
+    private void verifySnapshot(LedgerFile.Contents contents, File file) {
+        boolean intact = true;
+        try {
+            intact = contents.verify();
+        } catch (RuntimeException e) {
+            System.out.println("Error checking " + file + ": " + e);
+        }
+        if (!intact) {
+            File corrupt = new File(file.getPath() + CORRUPT_SUFFIX);
+            System.out.println("Error loading data: " + file + " is damaged: its checksum does not match; "
+                    + "keeping the backup and a copy as " + corrupt);
+            try {
+                Files.copy(file.toPath(), corrupt.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                System.out.println("Error copying " + file + ": " + e.getMessage());
+            }
+        }
+        synchronized (this) {
+            damaged = !intact;
+            verifying = false;
+            notifyAll();
+        }
+    }
+
+    /** Checks the budgets against the changes made while the aggregate index was being built. */
+    private synchronized void indexBuilt() {
+        if (!closed) {
+            checkBudgets();
+        }
+    }
+
+    private LedgerFile.Contents readBackup(File backup) {
+        if (!backup.exists()) {
+            return null;
+        }
+        try {
+            LedgerFile.Contents contents = LedgerFile.read(backup);
+            System.out.println("Rolled back to the previous snapshot " + backup);
+            return contents;
+        } catch (IOException e) {
+            System.out.println("Error loading data: " + e.getMessage());
+            backup.renameTo(file(FILE_NAME + BACKUP_SUFFIX + CORRUPT_SUFFIX));
+            return null;
+        }
+    }
+
+    /**
+     * Replays the changes the snapshot lacks, which it names by journal
+     * generation and offset, and opens the journal that records every
+     * further change.
+     */
+    private void openJournal(long generation, long offset) {
+        File file = file(JOURNAL_FILE_NAME);
+        try {
+            journal = ExpenseJournal.open(file, categories, new ExpenseJournal.Handler() {
+                public void onAdd(Expense expense) {
+                    expenses.add(expense);
+                }
+
+                public void onUpdate(int index, Expense expense) {
+                    expenses.set(index, expense);
+                }
+
+                public void onDelete(int index) {
+                    expenses.remove(index);
+                }
+
+                public void onAddCategory(String category) {
+                    categories.intern(category);
+                }
+
+                public void onRemoveCategory(String category) {
+                    categories.merge(category, UNCATEGORIZED);
+                }
+
+                public void onRenameCategory(String from, String to) {
+                    categories.rename(from, to);
+                }
+
+                public void onPutRule(RecurringRule rule) {
+                    putRule(rule);
+                }
+
+                public void onRemoveRule(int id) {
+                    rules.remove(id);
+                }
+
+                public void onMaterialize(int[] ruleIds, int[] counts) {
+                    List<RecurringRule> materialized = new ArrayList<>();
+                    for (int id : ruleIds) {
+                        materialized.add(rules.get(id));
+                    }
+                    expenses.addAll(RecurringRule.occurrences(materialized, counts));
+                    for (int i = 0; i < ruleIds.length; i++) {
+                        putRule(materialized.get(i).withGenerated(counts[i]));
+                    }
+                }
+
+                public void onInsert(int index, Expense expense) {
+                    expenses.add(index, expense);
+                }
+
+                public void onDeleteRange(int index, int count) {
+                    expenses.subList(index, index + count).clear();
+                }
+
+                public void onInsertRows(int index, List<Expense> rows) {
+                    expenses.addAll(index, rows);
+                }
+
+                public void onForgetCategory(int id) {
+                    categories.forget(id);
+                }
+
+                public void onRestoreCategory(int id, String category, int position, int[] redirected) {
+                    categories.restore(id, category, position, redirected);
+                }
+
+                public void onSetBudget(int key, long limitCents) {
+                    budgets.setLimit(key, limitCents);
+                }
+            }, JOURNAL_COMMIT_WINDOW_MS, generation, offset);
+            if (journal.getRecordCount() > 0) {
+                System.out.println("Replayed " + journal.getRecordCount() + " changes from " + file);
+            }
+        } catch (IOException e) {
+            System.out.println("Error opening journal: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Journals a single change and queues a snapshot, which compacts the
+     * journal, once it has grown past the threshold.
+     */
+    private void logChange(Consumer<ExpenseJournal> change) {
+        rebaseOnSaved();
+        if (journal == null) {
+            return;
+        }
+        change.accept(journal);
+        if (journal.getRecordCount() >= JOURNAL_COMPACT_THRESHOLD) {
+            requestSnapshot();
+        }
+    }
+
+    /**
+     * Moves the ledger onto the file of the last save, so that the file it
+     * was read from can be replaced by the next one. Done with a change
+     * rather than by the save, since changes are made by the thread that
+     * reads the ledger.
+     */
+    private void rebaseOnSaved() {
+        if (savedFile != null) {
+            expenses.rebase(savedSnapshot, savedFile);
+            savedSnapshot = null;
+            savedFile = null;
+        }
+    }
+
+    private void putRule(RecurringRule rule) {
+        rules.put(rule.id, rule);
+        nextRuleId = Math.max(nextRuleId, rule.id + 1);
+    }
+
+    private File file(String name) {
+        return directory == null ? new File(name) : new File(directory, name);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,70 @@
+package expensetracker;
+
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.DefaultTableCellRenderer;
+import javax.swing.table.TableCellRenderer;
+import java.time.LocalDate;
+
+/**
+ * Table model that reads its cells straight from the ledger instead of keeping
+ * a copy of every row. Whoever changes the ledger reports the change through
+ * the fireTableRows* methods so only the affected rows are refreshed. Amounts
+ * are exposed as Long cents; AMOUNT_RENDERER shows them as money.
+ */
+class ExpenseTableModel extends AbstractTableModel {
+
+    private static final long serialVersionUID = 1L;
+    private static final String[] COLUMN_NAMES = { "Amount", "Category", "Date", "Note" };
+
+    static final TableCellRenderer AMOUNT_RENDERER = new DefaultTableCellRenderer() {
+        {
+            setHorizontalAlignment(RIGHT);
+        }
+
+        @Override
+        protected void setValue(Object value) {
+            setText(value == null ? "" : Money.format((Long) value));
+        }
+    };
+
+    private final Ledger expenses;
+
+    ExpenseTableModel(Ledger expenses) {
+        this.expenses = expenses;
+    }
+
+    @Override
+    public int getRowCount() {
+        return expenses.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMN_NAMES[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int columnIndex) {
+        return switch (columnIndex) {
+            case 0 -> Long.class;
+            case 1, 2, 3 -> String.class;
+            default -> super.getColumnClass(columnIndex);
+        };
+    }
+
+    @Override
+    public Object getValueAt(int rowIndex, int columnIndex) {
+        return switch (columnIndex) {
+            case 0 -> expenses.amountCentsAt(rowIndex);
+            case 1 -> expenses.categoryAt(rowIndex);
+            case 2 -> LocalDate.ofEpochDay(expenses.epochDayAt(rowIndex)).toString();
+            case 3 -> expenses.noteAt(rowIndex);
+            default -> null;
+        };
+    }
+}
\ No newline at end of file
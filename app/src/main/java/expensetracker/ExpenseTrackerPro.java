@@ -0,0 +1,1230 @@
+package expensetracker;
+
+import javax.swing.*;
+import javax.swing.event.DocumentListener;
+import javax.swing.event.MenuEvent;
+import javax.swing.event.MenuListener;
+import javax.swing.filechooser.FileNameExtensionFilter;
+import javax.swing.table.DefaultTableCellRenderer;
+import javax.swing.table.TableRowSorter;
+import java.awt.*;
+import java.awt.event.*;
+import java.io.*;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Vector;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.regex.PatternSyntaxException;
+
+public class ExpenseTrackerPro {
+
+    private static final int SEARCH_DEBOUNCE_MS = 150;
+    private static final String ALL_CATEGORIES = "All categories";
+    private static final String SETTINGS_TAB = "Settings";
+    private static final String DIAGNOSTICS_TAB = "Diagnostics";
+    private static final String ALL_EXPENSES = "All expenses";
+    private static final Metrics.Timer FILTER_TIMER = Metrics.timer("table.filter");
+    private static final Metrics.Timer TABLE_PAINT_TIMER = Metrics.timer("table.paint");
+    private final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ISO_LOCAL_DATE;
+    private static final String INVALID_EXPENSE_DATE = "Invalid date. Please use yyyy-MM-dd, from "
+            + Expense.EARLIEST_DATE + " to " + Expense.LATEST_DATE + ".";
+
+    // Data Models
+    private final ExpenseStore store;
+    private final Ledger expenses;
+    private final CategoryDictionary categories;
+    private final ReportWorker reportWorker;
+    private final RecurringScheduler recurringScheduler;
+
+    // UI Components
+    private JFrame frame;
+    private JTabbedPane tabbedPane;
+    private JMenuItem importMenuItem;
+    private JMenuItem exportMenuItem;
+    private JMenuItem undoMenuItem;
+    private JMenuItem redoMenuItem;
+
+    // Expense Panel Components
+    private ExpenseTableModel tableModel;
+    private JTable expenseTable;
+    private JTextField amountField;
+    private JComboBox<String> categoryComboBox;
+    private JTextField dateField;
+    private JTextArea noteArea;
+    private JButton mainActionButton;
+    private JButton editCancelButton;
+    private JButton deleteButton;
+    private JTextField searchField;
+    private TableRowSorter<ExpenseTableModel> sorter;
+    private SearchIndex searchIndex;
+    private Timer searchTimer;
+    private int editingIndex = -1;
+
+    // Reports Panel Components
+    private JTextArea summaryArea;
+    private JTextField startDateField;
+    private JTextField endDateField;
+    private PieChartPanel chartPanel;
+    private LocalDate reportStartDate;
+    private LocalDate reportEndDate;
+
+    // Trends Panel Components
+    private JTextField trendStartField;
+    private JTextField trendEndField;
+    private JComboBox<ReportEngine.Interval> trendIntervalBox;
+    private TrendTableModel trendModel;
+
+    // Settings Panel Components
+    private DefaultListModel<String> categoryListModel;
+    private JList<String> categoryList;
+    private JTextField newCategoryField;
+    private JButton addCategoryButton;
+    private JButton renameCategoryButton;
+    private JButton removeCategoryButton;
+    private DefaultListModel<String> recurringListModel;
+    private JList<String> recurringList;
+    private final List<Integer> recurringRuleIds = new ArrayList<>();
+    private DefaultListModel<String> budgetListModel;
+    private JList<String> budgetList;
+    private JComboBox<String> budgetCategoryBox;
+    private JTextField budgetAmountField;
+    private final List<String> budgetCategories = new ArrayList<>();
+
+    // Diagnostics Panel Components
+    private DiagnosticsTableModel diagnosticsModel;
+
+    public ExpenseTrackerPro() {
+        this.store = ExpenseStore.open(null);
+        this.expenses = store.expenses();
+        this.categories = store.categories();
+        this.reportWorker = new ReportWorker(new ReportEngine(store));
+        this.recurringScheduler = new RecurringScheduler(store, SwingUtilities::invokeLater,
+                this::recurringExpensesAdded);
+        initializeGUI();
+        store.whenIndexed(() -> SwingUtilities.invokeLater(this::reloadBudgetList));
+        store.setBudgetListener(alerts -> SwingUtilities.invokeLater(() -> showBudgetAlerts(alerts)));
+        recurringScheduler.start();
+    }
+
+    private void initializeGUI() {
+        frame = new JFrame("Professional Expense Tracker");
+        frame.setDefaultCloseOperation(JFrame.DO_NOTHING_ON_CLOSE);
+        frame.setSize(1200, 800);
+        frame.setLocationRelativeTo(null);
+        frame.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                reportWorker.shutdown();
+                recurringScheduler.shutdown();
+                store.close();
+                frame.dispose();
+            }
+        });
+
+        createMenuBar();
+
+        tabbedPane = new JTabbedPane();
+        tabbedPane.addTab("Manage Expenses", createExpensePanel());
+        tabbedPane.addTab("Reports", createReportsPanel());
+        tabbedPane.addTab("Trends", createTrendsPanel());
+        tabbedPane.addTab(SETTINGS_TAB, createSettingsPanel());
+        tabbedPane.addTab(DIAGNOSTICS_TAB, createDiagnosticsPanel());
+        tabbedPane.addChangeListener(e -> {
+            if (tabbedPane.getSelectedIndex() == tabbedPane.indexOfTab(DIAGNOSTICS_TAB)) {
+                diagnosticsModel.refresh();
+            }
+        });
+
+        frame.add(tabbedPane);
+        frame.setVisible(true);
+    }
+
+    private void createMenuBar() {
+        JMenuBar menuBar = new JMenuBar();
+        JMenu fileMenu = new JMenu("File");
+        JMenu editMenu = new JMenu("Edit");
+        JMenu helpMenu = new JMenu("Help");
+
+        importMenuItem = new JMenuItem("Import from CSV");
+        importMenuItem.addActionListener(e -> importFromCsv());
+        fileMenu.add(importMenuItem);
+
+        exportMenuItem = new JMenuItem("Export to CSV");
+        exportMenuItem.addActionListener(e -> exportToCsv());
+        fileMenu.add(exportMenuItem);
+
+        int shortcut = Toolkit.getDefaultToolkit().getMenuShortcutKeyMaskEx();
+        undoMenuItem = new JMenuItem("Undo");
+        undoMenuItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_Z, shortcut));
+        undoMenuItem.addActionListener(e -> undo(false));
+        editMenu.add(undoMenuItem);
+
+        redoMenuItem = new JMenuItem("Redo");
+        redoMenuItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_Y, shortcut));
+        redoMenuItem.addActionListener(e -> undo(true));
+        editMenu.add(redoMenuItem);
+        updateUndoMenu();
+        editMenu.addMenuListener(new MenuListener() {
+            @Override
+            public void menuSelected(MenuEvent e) {
+                updateUndoMenu();
+            }
+
+            @Override
+            public void menuDeselected(MenuEvent e) {
+            }
+
+            @Override
+            public void menuCanceled(MenuEvent e) {
+            }
+        });
+
+        JMenuItem aboutMenuItem = new JMenuItem("About");
+        aboutMenuItem.addActionListener(
+                e -> JOptionPane.showMessageDialog(frame, "Professional Expense Tracker v1.0\nCreated with Java Swing",
+                        "About", JOptionPane.INFORMATION_MESSAGE));
+        helpMenu.add(aboutMenuItem);
+
+        menuBar.add(fileMenu);
+        menuBar.add(editMenu);
+        menuBar.add(helpMenu);
+
+        frame.setJMenuBar(menuBar);
+    }
+
+    private JPanel createExpensePanel() {
+        JPanel mainPanel = new JPanel(new BorderLayout(15, 15));
+        mainPanel.setBorder(BorderFactory.createEmptyBorder(15, 15, 15, 15));
+
+        JPanel controlsPanel = new JPanel(new BorderLayout(10, 10));
+        controlsPanel.setBorder(BorderFactory.createTitledBorder("Add/Edit Expense"));
+
+        JPanel inputPanel = new JPanel(new GridBagLayout());
+        GridBagConstraints gbc = new GridBagConstraints();
+        gbc.insets = new Insets(5, 5, 5, 5);
+        gbc.fill = GridBagConstraints.HORIZONTAL;
+
+        amountField = new JTextField(15);
+        categoryComboBox = new JComboBox<>(new Vector<>(categories.names()));
+        dateField = new JTextField(LocalDate.now().format(DATE_FORMATTER), 15);
+        noteArea = new JTextArea(3, 20);
+        noteArea.setBorder(BorderFactory.createLineBorder(Color.GRAY));
+        JScrollPane noteScrollPane = new JScrollPane(noteArea);
+
+        gbc.gridx = 0;
+        gbc.gridy = 0;
+        gbc.weightx = 0;
+        inputPanel.add(new JLabel("Amount:"), gbc);
+        gbc.gridx = 1;
+        gbc.gridy = 0;
+        gbc.weightx = 1;
+        inputPanel.add(amountField, gbc);
+        gbc.gridx = 0;
+        gbc.gridy = 1;
+        gbc.weightx = 0;
+        inputPanel.add(new JLabel("Category:"), gbc);
+        gbc.gridx = 1;
+        gbc.gridy = 1;
+        gbc.weightx = 1;
+        inputPanel.add(categoryComboBox, gbc);
+        gbc.gridx = 0;
+        gbc.gridy = 2;
+        gbc.weightx = 0;
+        inputPanel.add(new JLabel("Date (yyyy-MM-dd):"), gbc);
+        gbc.gridx = 1;
+        gbc.gridy = 2;
+        gbc.weightx = 1;
+        inputPanel.add(dateField, gbc);
+        gbc.gridx = 0;
+        gbc.gridy = 3;
+        gbc.weightx = 0;
+        inputPanel.add(new JLabel("Note:"), gbc);
+        gbc.gridx = 1;
+        gbc.gridy = 3;
+        gbc.weightx = 1;
+        inputPanel.add(noteScrollPane, gbc);
+
+        JPanel buttonPanel = new JPanel();
+        mainActionButton = new JButton("Add Expense");
+        editCancelButton = new JButton("Cancel Edit");
+        deleteButton = new JButton("Delete Selected");
+        editCancelButton.setVisible(false);
+
+        buttonPanel.add(mainActionButton);
+        buttonPanel.add(editCancelButton);
+        buttonPanel.add(deleteButton);
+
+        controlsPanel.add(inputPanel, BorderLayout.CENTER);
+        controlsPanel.add(buttonPanel, BorderLayout.SOUTH);
+        mainPanel.add(controlsPanel, BorderLayout.NORTH);
+
+        JPanel tablePanel = new JPanel(new BorderLayout(5, 5));
+
+        JPanel searchPanel = new JPanel(new BorderLayout());
+        searchField = new JTextField();
+        searchPanel.add(new JLabel("Search: "), BorderLayout.WEST);
+        searchPanel.add(searchField, BorderLayout.CENTER);
+        tablePanel.add(searchPanel, BorderLayout.NORTH);
+
+        tableModel = new ExpenseTableModel(expenses);
+        expenseTable = new JTable(tableModel) {
+            @Override
+            protected void paintComponent(Graphics g) {
+                Metrics.Sample sample = TABLE_PAINT_TIMER.start();
+                try {
+                    super.paintComponent(g);
+                } finally {
+                    sample.close();
+                }
+            }
+        };
+
+        DefaultTableCellRenderer centerRenderer = new DefaultTableCellRenderer();
+        centerRenderer.setHorizontalAlignment(JLabel.CENTER);
+        expenseTable.getTableHeader().setDefaultRenderer(centerRenderer);
+        expenseTable.setDefaultRenderer(Long.class, ExpenseTableModel.AMOUNT_RENDERER);
+
+        searchIndex = new SearchIndex(expenses);
+        sorter = new TableRowSorter<>(tableModel);
+        expenseTable.setRowSorter(sorter);
+        expenseTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        JScrollPane tableScrollPane = new JScrollPane(expenseTable);
+        tablePanel.add(tableScrollPane, BorderLayout.CENTER);
+        mainPanel.add(tablePanel, BorderLayout.CENTER);
+
+        mainActionButton.addActionListener(e -> handleMainAction());
+        editCancelButton.addActionListener(e -> cancelEdit());
+        deleteButton.addActionListener(e -> deleteExpense());
+
+        expenseTable.getSelectionModel().addListSelectionListener(e -> {
+            if (!e.getValueIsAdjusting() && expenseTable.getSelectedRow() != -1 && editingIndex == -1) {
+                setEditMode(expenseTable.getSelectedRow());
+            }
+        });
+
+        // Typing restarts the timer, so a burst of keystrokes runs a single search
+        searchTimer = new Timer(SEARCH_DEBOUNCE_MS, e -> filterTable());
+        searchTimer.setRepeats(false);
+        searchField.getDocument().addDocumentListener(new DocumentListener() {
+            public void changedUpdate(javax.swing.event.DocumentEvent e) {
+                searchTimer.restart();
+            }
+
+            public void removeUpdate(javax.swing.event.DocumentEvent e) {
+                searchTimer.restart();
+            }
+
+            public void insertUpdate(javax.swing.event.DocumentEvent e) {
+                searchTimer.restart();
+            }
+        });
+
+        return mainPanel;
+    }
+
+    private void handleMainAction() {
+        if (editingIndex != -1) {
+            updateExpense();
+        } else {
+            addExpense();
+        }
+    }
+
+    private void setEditMode(int viewRow) {
+        editingIndex = expenseTable.convertRowIndexToModel(viewRow);
+
+        Expense expense = expenses.get(editingIndex);
+        amountField.setText(Money.format(expense.getAmountCents()));
+        categoryComboBox.setSelectedItem(categories.name(expense.getCategoryId()));
+        dateField.setText(expense.getDate().format(DATE_FORMATTER));
+        noteArea.setText(expense.getNote());
+
+        mainActionButton.setText("Update Expense");
+        editCancelButton.setVisible(true);
+        // FIX: The delete button should remain enabled even in edit mode.
+        deleteButton.setEnabled(true);
+    }
+
+    private void cancelEdit() {
+        editingIndex = -1;
+        mainActionButton.setText("Add Expense");
+        editCancelButton.setVisible(false);
+        // FIX: Re-enabling the delete button for consistency
+        deleteButton.setEnabled(true);
+        clearInputFields();
+        expenseTable.clearSelection();
+    }
+
+    private void addExpense() {
+        if (categories.isEmpty()) {
+            JOptionPane.showMessageDialog(frame,
+                    "Please add at least one category in the 'Settings' tab before adding an expense.",
+                    "No Categories Found", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+
+        try {
+            long amount = Money.parse(amountField.getText());
+            if (amount <= 0) {
+                JOptionPane.showMessageDialog(frame, "Amount must be a positive number.", "Invalid Input",
+                        JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            String category = (String) categoryComboBox.getSelectedItem();
+            if (category == null || category.isEmpty()) {
+                JOptionPane.showMessageDialog(frame, "Category cannot be empty.", "Invalid Input",
+                        JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            LocalDate date = parseExpenseDate(dateField.getText());
+            String note = noteArea.getText();
+
+            int index = store.add(amount, category, date, note);
+            searchIndex.rowAdded(index);
+            tableModel.fireTableRowsInserted(index, index);
+
+            updateUI();
+            clearInputFields();
+        } catch (NumberFormatException e) {
+            JOptionPane.showMessageDialog(frame, "Invalid amount. Please enter a number.", "Invalid Input",
+                    JOptionPane.ERROR_MESSAGE);
+        } catch (DateTimeParseException e) {
+            JOptionPane.showMessageDialog(frame, INVALID_EXPENSE_DATE, "Invalid Date",
+                    JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    private void updateExpense() {
+        try {
+            long amount = Money.parse(amountField.getText());
+            if (amount <= 0) {
+                JOptionPane.showMessageDialog(frame, "Amount must be a positive number.", "Invalid Input",
+                        JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            String category = (String) categoryComboBox.getSelectedItem();
+            LocalDate date = parseExpenseDate(dateField.getText());
+            String note = noteArea.getText();
+
+            int index = editingIndex;
+            searchIndex.rowChanging(index);
+            store.update(index, amount, category, date, note);
+            searchIndex.rowChanged(index);
+            tableModel.fireTableRowsUpdated(index, index);
+
+            updateUI();
+            cancelEdit();
+
+        } catch (NumberFormatException e) {
+            JOptionPane.showMessageDialog(frame, "Invalid amount. Please enter a number.", "Invalid Input",
+                    JOptionPane.ERROR_MESSAGE);
+        } catch (DateTimeParseException e) {
+            JOptionPane.showMessageDialog(frame, INVALID_EXPENSE_DATE, "Invalid Date",
+                    JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    private void deleteExpense() {
+        int selectedRow = expenseTable.getSelectedRow();
+        if (selectedRow == -1) {
+            JOptionPane.showMessageDialog(frame, "Please select an expense to delete.", "No Selection",
+                    JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+
+        int confirm = JOptionPane.showConfirmDialog(frame, "Are you sure you want to delete this expense?",
+                "Confirm Deletion", JOptionPane.YES_NO_OPTION);
+        if (confirm == JOptionPane.YES_OPTION) {
+            int modelIndex = expenseTable.convertRowIndexToModel(selectedRow);
+            store.delete(modelIndex);
+            searchIndex.rowDeleted(modelIndex);
+            tableModel.fireTableRowsDeleted(modelIndex, modelIndex);
+            updateUI();
+            JOptionPane.showMessageDialog(frame, "Expense deleted successfully.", "Deleted",
+                    JOptionPane.INFORMATION_MESSAGE);
+        }
+    }
+
+    /**
+     * Undoes the last change, or redoes the last undone one, and refreshes
+     * only the rows it touched. Category changes repaint every row, as
+     * renaming a category does.
+     */
+    private void undo(boolean redo) {
+        UndoHistory.Change change = redo ? store.redo() : store.undo();
+        if (change == null) {
+            return;
+        }
+        if (editingIndex >= 0) {
+            cancelEdit();
+        }
+        reloadCategoryLists();
+        searchIndex.invalidate();
+        int lastRow = change.firstRow + change.rowCount - 1;
+        switch (change.kind) {
+            case ADD, DELETE -> {
+                if ((change.kind == UndoHistory.Change.Kind.ADD) == redo) {
+                    tableModel.fireTableRowsInserted(change.firstRow, lastRow);
+                } else {
+                    tableModel.fireTableRowsDeleted(change.firstRow, lastRow);
+                }
+            }
+            case UPDATE -> tableModel.fireTableRowsUpdated(change.firstRow, lastRow);
+            case CATEGORY -> {
+                if (expenses.size() > 0) {
+                    tableModel.fireTableRowsUpdated(0, expenses.size() - 1);
+                }
+            }
+        }
+        updateUI();
+    }
+
+    /** Names the changes Undo and Redo would apply, and disables them when there are none. */
+    private void updateUndoMenu() {
+        String undo = store.undoDescription();
+        String redo = store.redoDescription();
+        undoMenuItem.setText(undo == null ? "Undo" : "Undo " + undo);
+        undoMenuItem.setEnabled(undo != null);
+        redoMenuItem.setText(redo == null ? "Redo" : "Redo " + redo);
+        redoMenuItem.setEnabled(redo != null);
+    }
+
+    private void filterTable() {
+        Metrics.Sample sample = FILTER_TIMER.start();
+        try {
+            BitSet matches = searchIndex.search(searchField.getText());
+            sorter.setRowFilter(matches == null ? null : new RowFilter<ExpenseTableModel, Integer>() {
+                @Override
+                public boolean include(Entry<? extends ExpenseTableModel, ? extends Integer> entry) {
+                    return matches.get(entry.getIdentifier());
+                }
+            });
+        } catch (PatternSyntaxException e) {
+            // Do nothing on bad regex
+        } finally {
+            sample.close();
+        }
+    }
+
+    private JPanel createReportsPanel() {
+        JPanel reportsPanel = new JPanel(new BorderLayout(15, 15));
+        reportsPanel.setBorder(BorderFactory.createEmptyBorder(15, 15, 15, 15));
+
+        JPanel filterPanel = new JPanel();
+        filterPanel.add(new JLabel("Start Date:"));
+        startDateField = new JTextField(LocalDate.now().minusMonths(1).format(DATE_FORMATTER), 10);
+        filterPanel.add(startDateField);
+        filterPanel.add(new JLabel("End Date:"));
+        endDateField = new JTextField(LocalDate.now().format(DATE_FORMATTER), 10);
+        filterPanel.add(endDateField);
+        JButton filterButton = new JButton("Filter");
+        filterButton.addActionListener(e -> updateReports());
+        filterPanel.add(filterButton);
+        reportsPanel.add(filterPanel, BorderLayout.NORTH);
+
+        JPanel contentPanel = new JPanel(new GridLayout(1, 2, 15, 15));
+
+        summaryArea = new JTextArea();
+        summaryArea.setEditable(false);
+        summaryArea.setBorder(BorderFactory.createTitledBorder("Summary"));
+        JScrollPane summaryScrollPane = new JScrollPane(summaryArea);
+        contentPanel.add(summaryScrollPane);
+
+        chartPanel = new PieChartPanel();
+        chartPanel.setBorder(BorderFactory.createTitledBorder("Category Breakdown"));
+        contentPanel.add(chartPanel);
+
+        reportsPanel.add(contentPanel, BorderLayout.CENTER);
+
+        updateReports();
+
+        return reportsPanel;
+    }
+
+    private void updateReports() {
+        try {
+            LocalDate startDate = parseDate(startDateField.getText());
+            LocalDate endDate = parseDate(endDateField.getText());
+            reportWorker.request(startDate, endDate, this::showReport);
+        } catch (DateTimeParseException e) {
+            JOptionPane.showMessageDialog(frame, "Invalid date format. Please use yyyy-MM-dd.", "Invalid Date",
+                    JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    private void showReport(ReportEngine.Report report) {
+        reportStartDate = report.startDate;
+        reportEndDate = report.endDate;
+
+        updateSummary(report.count, report.total);
+
+        chartPanel.setData(report.categories, report.categoryTotals, report.total);
+    }
+
+    private void updateSummary(int count, long total) {
+        if (count == 0) {
+            summaryArea.setText("No expenses found for the selected date range.");
+            return;
+        }
+
+        StringBuilder summaryText = new StringBuilder();
+        summaryText.append(String.format("--- Summary for %s to %s ---\n", reportStartDate, reportEndDate));
+        summaryText.append("Total Expenses: $").append(Money.format(total)).append("\n\n");
+        summaryArea.setText(summaryText.toString());
+    }
+
+    private JPanel createTrendsPanel() {
+        JPanel trendsPanel = new JPanel(new BorderLayout(15, 15));
+        trendsPanel.setBorder(BorderFactory.createEmptyBorder(15, 15, 15, 15));
+
+        JPanel filterPanel = new JPanel();
+        filterPanel.add(new JLabel("Start Date:"));
+        trendStartField = new JTextField(LocalDate.now().minusMonths(11).withDayOfMonth(1).format(DATE_FORMATTER), 10);
+        filterPanel.add(trendStartField);
+        filterPanel.add(new JLabel("End Date:"));
+        trendEndField = new JTextField(LocalDate.now().format(DATE_FORMATTER), 10);
+        filterPanel.add(trendEndField);
+        filterPanel.add(new JLabel("By:"));
+        trendIntervalBox = new JComboBox<>(ReportEngine.Interval.values());
+        trendIntervalBox.setSelectedItem(ReportEngine.Interval.MONTH);
+        filterPanel.add(trendIntervalBox);
+        JButton showButton = new JButton("Show");
+        showButton.addActionListener(e -> updateTrends());
+        filterPanel.add(showButton);
+        trendsPanel.add(filterPanel, BorderLayout.NORTH);
+
+        trendModel = new TrendTableModel();
+        JTable trendTable = new JTable(trendModel);
+        trendTable.setDefaultRenderer(Long.class, ExpenseTableModel.AMOUNT_RENDERER);
+        // Long ranges get many columns, so scroll sideways instead of squeezing them
+        trendTable.setAutoResizeMode(JTable.AUTO_RESIZE_OFF);
+        JScrollPane trendScrollPane = new JScrollPane(trendTable);
+        trendScrollPane.setBorder(BorderFactory.createTitledBorder("Spending by Category"));
+        trendsPanel.add(trendScrollPane, BorderLayout.CENTER);
+
+        updateTrends();
+
+        return trendsPanel;
+    }
+
+    private void updateTrends() {
+        LocalDate startDate;
+        LocalDate endDate;
+        try {
+            startDate = parseDate(trendStartField.getText());
+            endDate = parseDate(trendEndField.getText());
+        } catch (DateTimeParseException e) {
+            JOptionPane.showMessageDialog(frame, "Invalid date format. Please use yyyy-MM-dd.", "Invalid Date",
+                    JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        ReportEngine.Interval interval = (ReportEngine.Interval) trendIntervalBox.getSelectedItem();
+        if (endDate.isBefore(startDate)) {
+            JOptionPane.showMessageDialog(frame, "The end date is before the start date.", "Invalid Range",
+                    JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        if (interval.count(startDate, endDate) > ReportEngine.MAX_BUCKETS) {
+            JOptionPane.showMessageDialog(frame, "This range has more than " + ReportEngine.MAX_BUCKETS + " "
+                    + interval.toString().toLowerCase() + "s. Choose a longer interval or a shorter range.",
+                    "Range Too Long", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        reportWorker.requestTrend(startDate, endDate, interval, trendModel::setTrend);
+    }
+
+    private JPanel createSettingsPanel() {
+        JPanel settingsPanel = new JPanel(new GridLayout(1, 3, 20, 20));
+        settingsPanel.setBorder(BorderFactory.createEmptyBorder(20, 20, 20, 20));
+
+        JPanel categoryPanel = new JPanel(new BorderLayout(10, 10));
+        categoryPanel.setBorder(BorderFactory.createTitledBorder("Manage Categories"));
+
+        categoryListModel = new DefaultListModel<>();
+        categories.names().forEach(categoryListModel::addElement);
+        categoryList = new JList<>(categoryListModel);
+        categoryList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        JScrollPane categoryScrollPane = new JScrollPane(categoryList);
+
+        JPanel categoryControlPanel = new JPanel();
+        newCategoryField = new JTextField(15);
+        addCategoryButton = new JButton("Add");
+        renameCategoryButton = new JButton("Rename");
+        removeCategoryButton = new JButton("Remove");
+
+        categoryControlPanel.add(newCategoryField);
+        categoryControlPanel.add(addCategoryButton);
+        categoryControlPanel.add(renameCategoryButton);
+        categoryControlPanel.add(removeCategoryButton);
+
+        categoryPanel.add(categoryScrollPane, BorderLayout.CENTER);
+        categoryPanel.add(categoryControlPanel, BorderLayout.SOUTH);
+
+        settingsPanel.add(categoryPanel);
+
+        JPanel recurringPanel = new JPanel(new BorderLayout(10, 10));
+        recurringPanel.setBorder(BorderFactory.createTitledBorder("Recurring Expenses"));
+
+        recurringListModel = new DefaultListModel<>();
+        recurringList = new JList<>(recurringListModel);
+        recurringList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        reloadRecurringList();
+
+        JPanel recurringControlPanel = new JPanel();
+        JButton addRuleButton = new JButton("Add...");
+        JButton removeRuleButton = new JButton("Remove");
+        recurringControlPanel.add(addRuleButton);
+        recurringControlPanel.add(removeRuleButton);
+
+        recurringPanel.add(new JScrollPane(recurringList), BorderLayout.CENTER);
+        recurringPanel.add(recurringControlPanel, BorderLayout.SOUTH);
+
+        settingsPanel.add(recurringPanel);
+
+        JPanel budgetPanel = new JPanel(new BorderLayout(10, 10));
+        budgetPanel.setBorder(BorderFactory.createTitledBorder("Monthly Budgets"));
+
+        budgetListModel = new DefaultListModel<>();
+        budgetList = new JList<>(budgetListModel);
+        budgetList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        budgetCategoryBox = new JComboBox<>();
+        budgetAmountField = new JTextField(8);
+        reloadBudgetList();
+
+        JPanel budgetControlPanel = new JPanel();
+        JButton setBudgetButton = new JButton("Set");
+        JButton removeBudgetButton = new JButton("Remove");
+        budgetControlPanel.add(budgetCategoryBox);
+        budgetControlPanel.add(budgetAmountField);
+        budgetControlPanel.add(setBudgetButton);
+        budgetControlPanel.add(removeBudgetButton);
+
+        budgetPanel.add(new JScrollPane(budgetList), BorderLayout.CENTER);
+        budgetPanel.add(budgetControlPanel, BorderLayout.SOUTH);
+
+        settingsPanel.add(budgetPanel);
+
+        setBudgetButton.addActionListener(e -> setBudget());
+        removeBudgetButton.addActionListener(e -> removeBudget());
+
+        addRuleButton.addActionListener(e -> addRecurringRule());
+        removeRuleButton.addActionListener(e -> removeRecurringRule());
+        addCategoryButton.addActionListener(e -> addCategory());
+        renameCategoryButton.addActionListener(e -> renameCategory());
+        removeCategoryButton.addActionListener(e -> removeCategory());
+
+        return settingsPanel;
+    }
+
+    private JPanel createDiagnosticsPanel() {
+        JPanel diagnosticsPanel = new JPanel(new BorderLayout(15, 15));
+        diagnosticsPanel.setBorder(BorderFactory.createEmptyBorder(15, 15, 15, 15));
+
+        JPanel controlPanel = new JPanel();
+        JButton refreshButton = new JButton("Refresh");
+        JButton resetButton = new JButton("Reset");
+        JButton exportButton = new JButton("Export...");
+        controlPanel.add(refreshButton);
+        controlPanel.add(resetButton);
+        controlPanel.add(exportButton);
+        diagnosticsPanel.add(controlPanel, BorderLayout.NORTH);
+
+        diagnosticsModel = new DiagnosticsTableModel();
+        JTable diagnosticsTable = new JTable(diagnosticsModel);
+        JScrollPane diagnosticsScrollPane = new JScrollPane(diagnosticsTable);
+        diagnosticsScrollPane.setBorder(BorderFactory.createTitledBorder("Timings and Counters"));
+        diagnosticsPanel.add(diagnosticsScrollPane, BorderLayout.CENTER);
+        diagnosticsPanel.add(new JLabel("Timings are kept since the application started or was reset. Start it with "
+                + "-XX:StartFlightRecording to also record each timed run as a Flight Recorder event."),
+                BorderLayout.SOUTH);
+
+        refreshButton.addActionListener(e -> diagnosticsModel.refresh());
+        resetButton.addActionListener(e -> {
+            Metrics.reset();
+            diagnosticsModel.refresh();
+        });
+        exportButton.addActionListener(e -> exportDiagnostics());
+
+        return diagnosticsPanel;
+    }
+
+    /** Saves every timing with its full distribution, for attaching to a bug report. */
+    private void exportDiagnostics() {
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setDialogTitle("Export Diagnostics");
+        fileChooser.setFileFilter(new FileNameExtensionFilter("Text files (*.txt)", "txt"));
+        fileChooser.setSelectedFile(new File("expense-tracker-diagnostics.txt"));
+        if (fileChooser.showSaveDialog(frame) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        File file = fileChooser.getSelectedFile();
+        if (!file.getName().toLowerCase().endsWith(".txt")) {
+            file = new File(file.getAbsolutePath() + ".txt");
+        }
+        try {
+            Metrics.export(file);
+            diagnosticsModel.refresh();
+            JOptionPane.showMessageDialog(frame, "Diagnostics exported to " + file.getName(), "Export Complete",
+                    JOptionPane.INFORMATION_MESSAGE);
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(frame, "Error exporting diagnostics: " + e.getMessage(), "Export Error",
+                    JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    private void addCategory() {
+        String newCategory = newCategoryField.getText().trim();
+        if (store.addCategory(newCategory)) {
+            categoryListModel.addElement(newCategory);
+            categoryComboBox.addItem(newCategory);
+            newCategoryField.setText("");
+            reloadBudgetList();
+            updateUndoMenu();
+        } else {
+            JOptionPane.showMessageDialog(frame, "Category is either empty or already exists.", "Invalid Input",
+                    JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    /**
+     * Renames the selected category to the name in the text field. Renaming
+     * onto an existing category merges the two.
+     */
+    private void renameCategory() {
+        String selectedCategory = categoryList.getSelectedValue();
+        String newName = newCategoryField.getText().trim();
+        if (selectedCategory == null) {
+            JOptionPane.showMessageDialog(frame, "Please select a category to rename.", "No Selection",
+                    JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        if (newName.isEmpty() || newName.equals(selectedCategory)) {
+            JOptionPane.showMessageDialog(frame, "Please enter a new name for the category.", "Invalid Input",
+                    JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+
+        if (store.renameCategory(selectedCategory, newName)) {
+            categoryListModel.removeElement(selectedCategory);
+            categoryComboBox.removeItem(selectedCategory);
+        } else {
+            int position = categoryListModel.indexOf(selectedCategory);
+            categoryListModel.set(position, newName);
+            categoryComboBox.insertItemAt(newName, position);
+            categoryComboBox.removeItem(selectedCategory);
+        }
+        newCategoryField.setText("");
+        searchIndex.invalidate();
+        if (expenses.size() > 0) {
+            tableModel.fireTableRowsUpdated(0, expenses.size() - 1);
+        }
+        updateUI();
+    }
+
+    private void removeCategory() {
+        String selectedCategory = categoryList.getSelectedValue();
+        if (selectedCategory != null) {
+            categoryListModel.removeElement(selectedCategory);
+            categoryComboBox.removeItem(selectedCategory);
+
+            if (store.removeCategory(selectedCategory)) {
+                categoryListModel.addElement(ExpenseStore.UNCATEGORIZED);
+                categoryComboBox.addItem(ExpenseStore.UNCATEGORIZED);
+            }
+            searchIndex.invalidate();
+            if (expenses.size() > 0) {
+                tableModel.fireTableRowsUpdated(0, expenses.size() - 1);
+            }
+            updateUI();
+
+            JOptionPane.showMessageDialog(frame,
+                    "Category removed. Expenses from this category have been moved to 'Uncategorized'.", "Success",
+                    JOptionPane.INFORMATION_MESSAGE);
+        } else {
+            JOptionPane.showMessageDialog(frame, "Please select a category to remove.", "No Selection",
+                    JOptionPane.WARNING_MESSAGE);
+        }
+    }
+
+    private void addRecurringRule() {
+        if (categories.isEmpty()) {
+            JOptionPane.showMessageDialog(frame,
+                    "Please add at least one category before adding a recurring expense.",
+                    "No Categories Found", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+
+        JTextField ruleAmountField = new JTextField(10);
+        JComboBox<String> ruleCategoryBox = new JComboBox<>(new Vector<>(categories.names()));
+        JSpinner everySpinner = new JSpinner(new SpinnerNumberModel(1, 1, 999, 1));
+        JComboBox<ReportEngine.Interval> intervalBox = new JComboBox<>(ReportEngine.Interval.values());
+        intervalBox.setSelectedItem(ReportEngine.Interval.MONTH);
+        JTextField ruleStartField = new JTextField(LocalDate.now().format(DATE_FORMATTER), 10);
+        JTextField ruleEndField = new JTextField(10);
+        JTextField ruleNoteField = new JTextField(20);
+
+        JPanel repeatPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 5, 0));
+        repeatPanel.add(everySpinner);
+        repeatPanel.add(intervalBox);
+        JPanel panel = new JPanel(new GridLayout(0, 2, 5, 5));
+        panel.add(new JLabel("Amount:"));
+        panel.add(ruleAmountField);
+        panel.add(new JLabel("Category:"));
+        panel.add(ruleCategoryBox);
+        panel.add(new JLabel("Repeat every:"));
+        panel.add(repeatPanel);
+        panel.add(new JLabel("First Date (yyyy-MM-dd):"));
+        panel.add(ruleStartField);
+        panel.add(new JLabel("End Date (optional):"));
+        panel.add(ruleEndField);
+        panel.add(new JLabel("Note:"));
+        panel.add(ruleNoteField);
+
+        if (JOptionPane.showConfirmDialog(frame, panel, "Add Recurring Expense", JOptionPane.OK_CANCEL_OPTION,
+                JOptionPane.PLAIN_MESSAGE) != JOptionPane.OK_OPTION) {
+            return;
+        }
+        try {
+            long amount = Money.parse(ruleAmountField.getText());
+            if (amount <= 0) {
+                JOptionPane.showMessageDialog(frame, "Amount must be a positive number.", "Invalid Input",
+                        JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            LocalDate startDate = parseExpenseDate(ruleStartField.getText());
+            LocalDate endDate = ruleEndField.getText().isBlank() ? null : parseExpenseDate(ruleEndField.getText());
+            if (endDate != null && endDate.isBefore(startDate)) {
+                JOptionPane.showMessageDialog(frame, "The end date is before the first date.", "Invalid Input",
+                        JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            store.addRule(amount, (String) ruleCategoryBox.getSelectedItem(), ruleNoteField.getText(),
+                    (ReportEngine.Interval) intervalBox.getSelectedItem(), (Integer) everySpinner.getValue(),
+                    startDate, endDate);
+            reloadRecurringList();
+            recurringScheduler.runNow();
+        } catch (NumberFormatException e) {
+            JOptionPane.showMessageDialog(frame, "Invalid amount. Please enter a number.", "Invalid Input",
+                    JOptionPane.ERROR_MESSAGE);
+        } catch (DateTimeParseException e) {
+            JOptionPane.showMessageDialog(frame, INVALID_EXPENSE_DATE, "Invalid Date",
+                    JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    private void removeRecurringRule() {
+        int selected = recurringList.getSelectedIndex();
+        if (selected < 0) {
+            JOptionPane.showMessageDialog(frame, "Please select a recurring expense to remove.", "No Selection",
+                    JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        store.removeRule(recurringRuleIds.get(selected));
+        reloadRecurringList();
+        JOptionPane.showMessageDialog(frame,
+                "Recurring expense removed. Expenses it already added have been kept.", "Success",
+                JOptionPane.INFORMATION_MESSAGE);
+    }
+
+    /** Called on the event dispatch thread once a batch of recurring expenses has been appended. */
+    private void recurringExpensesAdded(int firstRow) {
+        searchIndex.invalidate();
+        tableModel.fireTableRowsInserted(firstRow, expenses.size() - 1);
+        updateUI();
+    }
+
+    /** Refills the recurring expense list from the store, showing each rule's next date. */
+    private void reloadRecurringList() {
+        recurringListModel.clear();
+        recurringRuleIds.clear();
+        for (RecurringRule rule : store.rules()) {
+            LocalDate next = rule.occurrence(rule.generated);
+            String status = rule.endDate != null && next.isAfter(rule.endDate) ? "ended" : "next " + next;
+            recurringListModel.addElement(String.format("%s  %s  %s (%s)  %s", Money.format(rule.amountCents),
+                    categories.name(categories.resolve(rule.categoryId)), rule.schedule().toLowerCase(), status,
+                    rule.note));
+            recurringRuleIds.add(rule.id);
+        }
+    }
+
+    private void setBudget() {
+        String selected = (String) budgetCategoryBox.getSelectedItem();
+        try {
+            long limit = Money.parse(budgetAmountField.getText());
+            if (limit <= 0) {
+                JOptionPane.showMessageDialog(frame, "Amount must be a positive number.", "Invalid Input",
+                        JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            store.setBudget(ALL_EXPENSES.equals(selected) ? null : selected, limit);
+            budgetAmountField.setText("");
+            reloadBudgetList();
+        } catch (NumberFormatException e) {
+            JOptionPane.showMessageDialog(frame, "Invalid amount. Please enter a number.", "Invalid Input",
+                    JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    private void removeBudget() {
+        int selected = budgetList.getSelectedIndex();
+        // The list holds a placeholder rather than budgets while the store sums its expenses
+        if (selected < 0 || selected >= budgetCategories.size()) {
+            JOptionPane.showMessageDialog(frame, "Please select a budget to remove.", "No Selection",
+                    JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        store.setBudget(budgetCategories.get(selected), 0);
+        reloadBudgetList();
+    }
+
+    /** Shows the budgets a change pushed past a threshold; the store hands them over as they happen. */
+    private void showBudgetAlerts(List<Budgets.Alert> alerts) {
+        StringBuilder message = new StringBuilder();
+        for (Budgets.Alert alert : alerts) {
+            message.append(alert.message()).append('\n');
+        }
+        reloadBudgetList();
+        JOptionPane.showMessageDialog(frame, message.toString().trim(), "Budget Alert", JOptionPane.WARNING_MESSAGE);
+    }
+
+    /**
+     * Refills the budget list with this month's spending and the budget
+     * category box from the dictionary. Until the store has summed its
+     * expenses the list says so; it is reloaded once they are.
+     */
+    private void reloadBudgetList() {
+        budgetListModel.clear();
+        budgetCategories.clear();
+        if (!store.isIndexed()) {
+            budgetListModel.addElement("Summing expenses...");
+        } else {
+            for (Budgets.Status status : store.budgetStatuses(LocalDate.now())) {
+                budgetListModel.addElement(String.format("%s  %s of %s (%d%%)", status.name(),
+                        Money.format(status.spentCents), Money.format(status.limitCents), status.percent()));
+                budgetCategories.add(status.category);
+            }
+        }
+        Object selected = budgetCategoryBox.getSelectedItem();
+        budgetCategoryBox.removeAllItems();
+        budgetCategoryBox.addItem(ALL_EXPENSES);
+        categories.names().forEach(budgetCategoryBox::addItem);
+        budgetCategoryBox.setSelectedItem(selected);
+    }
+
+    /** Refills the category list and combo box from the dictionary. */
+    private void reloadCategoryLists() {
+        Object selected = categoryComboBox.getSelectedItem();
+        categoryListModel.clear();
+        categoryComboBox.removeAllItems();
+        for (String category : categories.names()) {
+            categoryListModel.addElement(category);
+            categoryComboBox.addItem(category);
+        }
+        categoryComboBox.setSelectedItem(selected);
+    }
+
+    private void exportToCsv() {
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setDialogTitle("Export Expenses to CSV");
+        fileChooser.setFileFilter(new FileNameExtensionFilter("CSV files (*.csv)", "csv"));
+
+        JTextField exportStartField = new JTextField(10);
+        JTextField exportEndField = new JTextField(10);
+        JComboBox<String> exportCategoryBox = new JComboBox<>();
+        exportCategoryBox.addItem(ALL_CATEGORIES);
+        categories.names().forEach(exportCategoryBox::addItem);
+        JPanel filterPanel = new JPanel(new GridLayout(0, 1, 5, 5));
+        filterPanel.setBorder(BorderFactory.createTitledBorder("Filter (optional)"));
+        filterPanel.add(new JLabel("Start Date:"));
+        filterPanel.add(exportStartField);
+        filterPanel.add(new JLabel("End Date:"));
+        filterPanel.add(exportEndField);
+        filterPanel.add(new JLabel("Category:"));
+        filterPanel.add(exportCategoryBox);
+        fileChooser.setAccessory(filterPanel);
+
+        int userSelection = fileChooser.showSaveDialog(frame);
+        if (userSelection == JFileChooser.APPROVE_OPTION) {
+            File fileToSave = fileChooser.getSelectedFile();
+            if (!fileToSave.getName().toLowerCase().endsWith(".csv")) {
+                fileToSave = new File(fileToSave.getAbsolutePath() + ".csv");
+            }
+
+            CsvExporter exporter = new CsvExporter(store.snapshot());
+            try {
+                long startDay = exportStartField.getText().isBlank() ? Long.MIN_VALUE
+                        : parseDate(exportStartField.getText()).toEpochDay();
+                long endDay = exportEndField.getText().isBlank() ? Long.MAX_VALUE
+                        : parseDate(exportEndField.getText()).toEpochDay();
+                exporter.setDateRange(startDay, endDay);
+            } catch (DateTimeParseException e) {
+                JOptionPane.showMessageDialog(frame, "Invalid date format. Please use yyyy-MM-dd.", "Invalid Date",
+                        JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            String category = (String) exportCategoryBox.getSelectedItem();
+            if (!ALL_CATEGORIES.equals(category)) {
+                exporter.setCategoryId(categories.id(category));
+            }
+
+            File target = fileToSave;
+            ProgressMonitor monitor = new ProgressMonitor(frame, "Exporting expenses...", null, 0,
+                    Math.max(1, expenses.size()));
+            new SwingWorker<Integer, Void>() {
+                @Override
+                protected Integer doInBackground() throws IOException {
+                    return exporter.export(target, rows -> SwingUtilities.invokeLater(() -> monitor.setProgress(rows)),
+                            monitor::isCanceled);
+                }
+
+                @Override
+                protected void done() {
+                    monitor.close();
+                    try {
+                        JOptionPane.showMessageDialog(frame, "Exported " + get() + " expenses successfully!",
+                                "Export Complete", JOptionPane.INFORMATION_MESSAGE);
+                    } catch (ExecutionException ex) {
+                        if (ex.getCause() instanceof CancellationException) {
+                            target.delete();
+                            JOptionPane.showMessageDialog(frame, "Export cancelled.", "Export Cancelled",
+                                    JOptionPane.INFORMATION_MESSAGE);
+                        } else {
+                            JOptionPane.showMessageDialog(frame, "Error exporting file: " + ex.getCause().getMessage(),
+                                    "Export Error", JOptionPane.ERROR_MESSAGE);
+                        }
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }.execute();
+        }
+    }
+
+    private void setEditingEnabled(boolean enabled) {
+        mainActionButton.setEnabled(enabled);
+        deleteButton.setEnabled(enabled);
+        renameCategoryButton.setEnabled(enabled);
+        removeCategoryButton.setEnabled(enabled);
+        importMenuItem.setEnabled(enabled);
+        exportMenuItem.setEnabled(enabled);
+    }
+
+    private void importFromCsv() {
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setDialogTitle("Import Expenses from CSV");
+        fileChooser.setFileFilter(new FileNameExtensionFilter("CSV files (*.csv)", "csv"));
+
+        int userSelection = fileChooser.showOpenDialog(frame);
+        if (userSelection == JFileChooser.APPROVE_OPTION) {
+            File fileToImport = fileChooser.getSelectedFile();
+            frame.setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+            setEditingEnabled(false);
+            new SwingWorker<CsvImporter.Result, Void>() {
+                @Override
+                protected CsvImporter.Result doInBackground() throws IOException {
+                    return new CsvImporter().parse(fileToImport);
+                }
+
+                @Override
+                protected void done() {
+                    frame.setCursor(Cursor.getDefaultCursor());
+                    setEditingEnabled(true);
+                    try {
+                        CsvImporter.Result result = get();
+                        commitImport(result);
+                        showImportSummary(result);
+                    } catch (ExecutionException ex) {
+                        JOptionPane.showMessageDialog(frame, "Error importing file: " + ex.getCause().getMessage(),
+                                "Import Error", JOptionPane.ERROR_MESSAGE);
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }.execute();
+        }
+    }
+
+    /** Appends the imported expenses, then refreshes the UI once. */
+    private void commitImport(CsvImporter.Result result) {
+        int firstRow = store.importRows(result);
+        if (expenses.size() == firstRow) {
+            return;
+        }
+        reloadCategoryLists();
+        searchIndex.invalidate();
+        tableModel.fireTableRowsInserted(firstRow, expenses.size() - 1);
+        updateUI();
+    }
+
+    private void showImportSummary(CsvImporter.Result result) {
+        String message = "Imported " + result.rowCount() + " expenses.";
+        if (result.errorCount == 0) {
+            JOptionPane.showMessageDialog(frame, message, "Import Complete", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        JTextArea errorArea = new JTextArea(String.join("\n", result.errors), 15, 60);
+        errorArea.setEditable(false);
+        JPanel panel = new JPanel(new BorderLayout(5, 5));
+        panel.add(new JLabel(message + " " + result.errorCount + " rows were skipped:"), BorderLayout.NORTH);
+        panel.add(new JScrollPane(errorArea), BorderLayout.CENTER);
+        JOptionPane.showMessageDialog(frame, panel, "Import Complete", JOptionPane.WARNING_MESSAGE);
+    }
+
+    private void updateUI() {
+        if (!searchField.getText().isEmpty()) {
+            filterTable();
+        }
+        updateReports();
+        updateTrends();
+        reloadRecurringList();
+        reloadBudgetList();
+        updateUndoMenu();
+        int settingsTab = tabbedPane.indexOfTab(SETTINGS_TAB);
+        if (categories.isEmpty() && tabbedPane.getSelectedIndex() != settingsTab) {
+            JOptionPane.showMessageDialog(frame, "Please add at least one category in the 'Settings' tab.",
+                    "No Categories Found", JOptionPane.WARNING_MESSAGE);
+            tabbedPane.setSelectedIndex(settingsTab);
+        }
+    }
+
+    private void clearInputFields() {
+        amountField.setText("");
+        if (!categories.isEmpty()) {
+            categoryComboBox.setSelectedIndex(0);
+        } else {
+            categoryComboBox.setSelectedItem(null);
+        }
+        dateField.setText(LocalDate.now().format(DATE_FORMATTER));
+        noteArea.setText("");
+    }
+
+    private LocalDate parseDate(String dateString) throws DateTimeParseException {
+        return LocalDate.parse(dateString.trim(), DATE_FORMATTER);
+    }
+
+    /** Parses the date of an expense or rule, which must fall in the range accepted from input. */
+    private LocalDate parseExpenseDate(String dateString) throws DateTimeParseException {
+        LocalDate date = parseDate(dateString);
+        if (!Expense.isAcceptedDate(date)) {
+            throw new DateTimeParseException("Date out of range", dateString, 0);
+        }
+        return date;
+    }
+
+    public static void main(String[] args) {
+        if (args.length > 0) {
+            System.exit(ExpenseCli.run(args));
+        }
+        try {
+            UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        SwingUtilities.invokeLater(ExpenseTrackerPro::new);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,729 @@
+package expensetracker;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * The list of expenses, kept as columns rather than as Expense objects. Rows
+ * of the memory-mapped ledger file are read from its mapped columns, and rows
+ * added since the snapshot are appended to growable arrays of amounts, days,
+ * category ids and note offsets, with the notes' UTF-8 bytes in one more
+ * array, which costs about 20 bytes a row plus the note. The order of all
+ * rows is a list of pieces, runs of consecutive rows of either source, so
+ * rows can be removed and inserted anywhere; changes split pieces, and
+ * {@link #rebase} joins them again after a save. Every row stores a
+ * category id of the ledger's
+ * {@link CategoryDictionary}.
+ * <p>
+ * get() returns a read-only Expense that reads its row's columns when asked,
+ * and scans use the column accessors (amountCentsAt, epochDayAt, categoryAt,
+ * noteAt) or copy whole ranges with readColumns(), which create no objects at
+ * all. Changes are not synchronized; {@link ExpenseStore} serializes them and
+ * hands other threads a {@link #snapshot()}. Rows are never changed once
+ * written: an edit appends a new row, and the rows left behind by edits and
+ * removals are reclaimed once they outnumber the live ones.
+ */
+class Ledger extends AbstractList<Expense> implements RandomAccess {
+
+    private static final Metrics.Counter ROWS_DECODED = Metrics.counter("rows.decoded");
+    // Dead added rows to keep before compacting, so that undoing a few edits stays cheap
+    private static final int COMPACT_THRESHOLD = 1024;
+
+    /**
+     * The added rows. Rows below a ledger's addedCount are never written
+     * again, so a snapshot and the views returned by get() share the arrays
+     * with the ledger, which appends past them. Growing and compacting
+     * replace the columns instead of changing them.
+     */
+    private static final class Columns {
+        final long[] amounts;
+        final int[] epochDays;
+        final int[] categoryIds;
+        // Row i's note is notes[noteOffsets[i]] up to noteOffsets[i + 1]
+        final int[] noteOffsets;
+        final byte[] notes;
+
+        Columns(int capacity, int noteCapacity) {
+            amounts = new long[capacity];
+            epochDays = new int[capacity];
+            categoryIds = new int[capacity];
+            noteOffsets = new int[capacity + 1];
+            notes = new byte[noteCapacity];
+        }
+
+        /** Returns columns of a larger capacity holding the first rows of these. */
+        Columns copy(int rows, int capacity, int noteCapacity) {
+            Columns copy = new Columns(capacity, noteCapacity);
+            System.arraycopy(amounts, 0, copy.amounts, 0, rows);
+            System.arraycopy(epochDays, 0, copy.epochDays, 0, rows);
+            System.arraycopy(categoryIds, 0, copy.categoryIds, 0, rows);
+            System.arraycopy(noteOffsets, 0, copy.noteOffsets, 0, rows + 1);
+            System.arraycopy(notes, 0, copy.notes, 0, noteOffsets[rows]);
+            return copy;
+        }
+
+        String note(int row) {
+            int start = noteOffsets[row];
+            return new String(notes, start, noteOffsets[row + 1] - start, StandardCharsets.UTF_8);
+        }
+
+        long bytes() {
+            return (long) amounts.length * (Long.BYTES + 3 * Integer.BYTES) + Integer.BYTES + notes.length;
+        }
+    }
+
+    /** An Expense that reads a row of the ledger instead of holding its values. */
+    private abstract static class RowView extends Expense {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public LocalDate getDate() {
+            return LocalDate.ofEpochDay(getEpochDay());
+        }
+
+        @Override
+        public void setAmountCents(long amountCents) {
+            throw new UnsupportedOperationException("Ledger rows are read-only");
+        }
+
+        @Override
+        public void setCategoryId(int categoryId) {
+            throw new UnsupportedOperationException("Ledger rows are read-only");
+        }
+
+        @Override
+        public void setDate(LocalDate date) {
+            throw new UnsupportedOperationException("Ledger rows are read-only");
+        }
+
+        @Override
+        public void setNote(String note) {
+            throw new UnsupportedOperationException("Ledger rows are read-only");
+        }
+    }
+
+    /** The columns of a mapped ledger file. */
+    private static final class Mapped {
+        final LongBuffer amounts;
+        final IntBuffer epochDays;
+        final IntBuffer categoryIds;
+        final IntBuffer noteOffsets;
+        final ByteBuffer noteHeap;
+
+        Mapped(LongBuffer amounts, IntBuffer epochDays, IntBuffer categoryIds, IntBuffer noteOffsets,
+                ByteBuffer noteHeap) {
+            this.amounts = amounts;
+            this.epochDays = epochDays;
+            this.categoryIds = categoryIds;
+            this.noteOffsets = noteOffsets;
+            this.noteHeap = noteHeap;
+        }
+
+        String note(int row) {
+            int start = noteOffsets.get(row);
+            byte[] bytes = new byte[noteOffsets.get(row + 1) - start];
+            noteHeap.get(start, bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    /** A row of the mapped snapshot. */
+    private static final class MappedRow extends RowView {
+        private static final long serialVersionUID = 1L;
+
+        private final Mapped mapped;
+        private final int row;
+
+        MappedRow(Mapped mapped, int row) {
+            this.mapped = mapped;
+            this.row = row;
+        }
+
+        @Override
+        public long getAmountCents() {
+            return mapped.amounts.get(row);
+        }
+
+        @Override
+        public int getCategoryId() {
+            return mapped.categoryIds.get(row);
+        }
+
+        @Override
+        public long getEpochDay() {
+            return mapped.epochDays.get(row);
+        }
+
+        @Override
+        public String getNote() {
+            return mapped.note(row);
+        }
+    }
+
+    /** An added row. */
+    private static final class AddedRow extends RowView {
+        private static final long serialVersionUID = 1L;
+
+        private final Columns columns;
+        private final int row;
+
+        AddedRow(Columns columns, int row) {
+            this.columns = columns;
+            this.row = row;
+        }
+
+        @Override
+        public long getAmountCents() {
+            return columns.amounts[row];
+        }
+
+        @Override
+        public int getCategoryId() {
+            return columns.categoryIds[row];
+        }
+
+        @Override
+        public long getEpochDay() {
+            return columns.epochDays[row];
+        }
+
+        @Override
+        public String getNote() {
+            return columns.note(row);
+        }
+    }
+
+    private final CategoryDictionary categories;
+
+    // Mapped snapshot columns, replaced by rebase() once a later snapshot is saved
+    private Mapped mapped;
+
+    // Changes on top of the snapshot: the list is a sequence of pieces, each a
+    // run of consecutive rows of either the mapped snapshot or the added rows
+    private int pieceCount;
+    private int[] pieceRow;
+    private int[] pieceEnd;
+    private Columns added;
+    private int addedCount;
+    // Added rows no piece refers to any more
+    private int deadCount;
+    // Set on a snapshot, whose source may already have appended past its rows
+    private boolean sharedColumns;
+    // Times compacting renumbered the added rows; a snapshot from before numbers them differently
+    private int compactions;
+
+    /** Creates an empty ledger. */
+    Ledger() {
+        this(new CategoryDictionary());
+    }
+
+    /** Creates an empty ledger whose rows will use an existing dictionary. */
+    Ledger(CategoryDictionary categories) {
+        this(categories, LongBuffer.allocate(0), IntBuffer.allocate(0), IntBuffer.allocate(0),
+                IntBuffer.allocate(1), ByteBuffer.allocate(0));
+    }
+
+    Ledger(CategoryDictionary categories, LongBuffer amounts, IntBuffer epochDays, IntBuffer categoryIds,
+            IntBuffer noteOffsets, ByteBuffer noteHeap) {
+        this.categories = categories;
+        this.mapped = new Mapped(amounts, epochDays, categoryIds, noteOffsets, noteHeap);
+        this.pieceRow = new int[8];
+        this.pieceEnd = new int[8];
+        if (amounts.limit() > 0) {
+            pieceEnd[0] = amounts.limit();
+            pieceCount = 1;
+        }
+        this.added = new Columns(0, 0);
+    }
+
+    private Ledger(Ledger source) {
+        this.categories = source.categories;
+        this.mapped = source.mapped;
+        this.pieceCount = source.pieceCount;
+        this.pieceRow = Arrays.copyOf(source.pieceRow, Math.max(8, source.pieceCount));
+        this.pieceEnd = Arrays.copyOf(source.pieceEnd, Math.max(8, source.pieceCount));
+        this.added = source.added;
+        this.addedCount = source.addedCount;
+        this.deadCount = source.deadCount;
+        this.sharedColumns = true;
+        this.compactions = source.compactions;
+    }
+
+    /**
+     * Returns a copy that later changes to this ledger do not affect. The
+     * mapped and added columns are shared, so only the piece list is copied.
+     * Category names are still looked up in the shared dictionary.
+     */
+    Ledger snapshot() {
+        return new Ledger(this);
+    }
+
+    CategoryDictionary categories() {
+        return categories;
+    }
+
+    /**
+     * Moves the ledger onto the file saved from written, an earlier snapshot
+     * of it, which saved maps: the rows written are read from that file from
+     * now on, and the pieces holding them join up again. Only the rows added
+     * since stay in the added columns, which are compacted if that leaves
+     * most of them dead. The file the ledger was read from is then no longer
+     * used, so a later save can replace it. Nothing changes if the ledger
+     * holds a mapped row the snapshot lacked, which does not happen unless
+     * the snapshot was taken from another ledger.
+     */
+    void rebase(Ledger written, Ledger saved) {
+        if (saved.size() != written.size()) {
+            throw new IllegalArgumentException("Saved " + saved.size() + " rows of " + written.size());
+        }
+        // Runs of source rows in written by first row, mapped and added ones apart, with the list index of each
+        // Added rows renumbered by a compaction since the snapshot are not looked up, and stay added
+        boolean sameAdded = written.compactions == compactions;
+        long[] mappedRuns = new long[written.pieceCount];
+        long[] addedRuns = new long[written.pieceCount];
+        int mappedRunCount = 0;
+        int addedRunCount = 0;
+        for (int p = 0; p < written.pieceCount; p++) {
+            int row = written.pieceRow[p];
+            if (row >= 0) {
+                mappedRuns[mappedRunCount++] = (long) row << 32 | p;
+            } else if (sameAdded) {
+                addedRuns[addedRunCount++] = (long) ~row << 32 | p;
+            }
+        }
+        Arrays.sort(mappedRuns, 0, mappedRunCount);
+        Arrays.sort(addedRuns, 0, addedRunCount);
+
+        int[] rows = new int[Math.max(8, pieceCount)];
+        int[] ends = new int[rows.length];
+        int count = 0;
+        int liveAdded = 0;
+        for (int p = 0; p < pieceCount; p++) {
+            int row = pieceRow[p];
+            int index = p == 0 ? 0 : pieceEnd[p - 1];
+            while (index < pieceEnd[p]) {
+                boolean isAdded = row < 0;
+                int source = isAdded ? ~row : row;
+                long[] runs = isAdded ? addedRuns : mappedRuns;
+                int runCount = isAdded ? addedRunCount : mappedRunCount;
+                int run = floorRun(runs, runCount, source);
+                int length = pieceEnd[p] - index;
+                int moved = -1;
+                if (run >= 0) {
+                    int q = (int) runs[run];
+                    int qStart = q == 0 ? 0 : written.pieceEnd[q - 1];
+                    int offset = source - (int) (runs[run] >>> 32);
+                    if (offset < written.pieceEnd[q] - qStart) {
+                        length = Math.min(length, written.pieceEnd[q] - qStart - offset);
+                        moved = qStart + offset;
+                    }
+                }
+                if (moved < 0) {
+                    if (!isAdded) {
+                        return;
+                    }
+                    // Added since the snapshot: stays added up to the next run of rows that were saved
+                    if (run + 1 < runCount) {
+                        length = Math.min(length, (int) (runs[run + 1] >>> 32) - source);
+                    }
+                    moved = row;
+                    liveAdded += length;
+                }
+                if (count > 0 && advance(rows[count - 1], ends[count - 1] - (count == 1 ? 0 : ends[count - 2]))
+                        == moved) {
+                    ends[count - 1] += length;
+                } else {
+                    if (count == rows.length) {
+                        rows = Arrays.copyOf(rows, count * 2);
+                        ends = Arrays.copyOf(ends, count * 2);
+                    }
+                    rows[count] = moved;
+                    ends[count] = index + length;
+                    count++;
+                }
+                index += length;
+                row = advance(row, length);
+            }
+        }
+        mapped = saved.mapped;
+        pieceRow = rows;
+        pieceEnd = ends;
+        pieceCount = count;
+        deadCount = this.addedCount - liveAdded;
+        compactIfSparse();
+    }
+
+    /** Returns the last of the sorted runs starting at or before a source row, or -1. */
+    private static int floorRun(long[] runs, int count, int source) {
+        int low = 0;
+        int high = count - 1;
+        int found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if ((int) (runs[mid] >>> 32) <= source) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Estimates the heap the ledger holds: the added columns, including rows
+     * not reclaimed yet, and the piece list. Mapped columns live in the page
+     * cache and count nothing, except the amounts of a version 1 file, which
+     * are converted onto the heap.
+     */
+    long heapBytes() {
+        long bytes = added.bytes() + (long) pieceRow.length * 2 * Integer.BYTES;
+        return mapped.amounts.hasArray() ? bytes + (long) mapped.amounts.capacity() * Long.BYTES : bytes;
+    }
+
+    @Override
+    public int size() {
+        return pieceCount == 0 ? 0 : pieceEnd[pieceCount - 1];
+    }
+
+    /**
+     * Returns a read-only view of a row, which stays valid after the row is
+     * changed or removed. Its setters throw UnsupportedOperationException.
+     */
+    @Override
+    public Expense get(int index) {
+        int row = row(index);
+        ROWS_DECODED.increment();
+        return row < 0 ? new AddedRow(added, ~row) : new MappedRow(mapped, row);
+    }
+
+    @Override
+    public Expense set(int index, Expense expense) {
+        Expense previous = copy(row(index));
+        int row = ~append(expense);
+        unlink(index);
+        insertRow(index, row);
+        modCount++;
+        compactIfSparse();
+        return previous;
+    }
+
+    /**
+     * Inserts an expense. Appending is the usual case, but any index works, so
+     * that a deleted row can be put back where it was.
+     */
+    @Override
+    public void add(int index, Expense expense) {
+        if (index < 0 || index > size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+        insertRow(index, ~append(expense));
+        modCount++;
+    }
+
+    @Override
+    public Expense remove(int index) {
+        checkIndex(index);
+        Expense previous = copy(row(index));
+        unlink(index);
+        modCount++;
+        compactIfSparse();
+        return previous;
+    }
+
+    @Override
+    protected void removeRange(int fromIndex, int toIndex) {
+        for (int index = toIndex - 1; index >= fromIndex; index--) {
+            unlink(index);
+        }
+        modCount++;
+        compactIfSparse();
+    }
+
+    long amountCentsAt(int index) {
+        int row = row(index);
+        return row < 0 ? added.amounts[~row] : mapped.amounts.get(row);
+    }
+
+    long epochDayAt(int index) {
+        int row = row(index);
+        return row < 0 ? added.epochDays[~row] : mapped.epochDays.get(row);
+    }
+
+    /** Returns the current category id of a row, following any merges. */
+    int categoryIdAt(int index) {
+        return categories.resolve(storedCategoryIdAt(index));
+    }
+
+    /**
+     * Returns the category id a row was stored with, which may since have been
+     * merged into another. Unlike categoryIdAt() it does not lock the
+     * dictionary, so parallel scans that fold merges later use this.
+     */
+    int storedCategoryIdAt(int index) {
+        int row = row(index);
+        return row < 0 ? added.categoryIds[~row] : mapped.categoryIds.get(row);
+    }
+
+    String categoryAt(int index) {
+        return categories.name(categoryIdAt(index));
+    }
+
+    String noteAt(int index) {
+        int row = row(index);
+        return row < 0 ? added.note(~row) : mapped.note(row);
+    }
+
+    /**
+     * Copies the amounts, days and stored category ids of the rows from one
+     * index up to another into arrays, starting at their index 0. Runs of
+     * consecutive rows are copied in bulk, so scans can then loop over plain
+     * arrays. Arrays that are null are skipped.
+     */
+    void readColumns(int from, int to, long[] amountsOut, int[] epochDaysOut, int[] categoryIdsOut) {
+        if (from < 0 || to > size() || from > to) {
+            throw new IndexOutOfBoundsException("Range: " + from + " to " + to + ", Size: " + size());
+        }
+        int index = from;
+        for (int p = from < to ? piece(from) : pieceCount; index < to; p++) {
+            int start = p == 0 ? 0 : pieceEnd[p - 1];
+            int row = advance(pieceRow[p], index - start);
+            int length = Math.min(pieceEnd[p], to) - index;
+            int offset = index - from;
+            if (row < 0) {
+                if (amountsOut != null) {
+                    System.arraycopy(added.amounts, ~row, amountsOut, offset, length);
+                }
+                if (epochDaysOut != null) {
+                    System.arraycopy(added.epochDays, ~row, epochDaysOut, offset, length);
+                }
+                if (categoryIdsOut != null) {
+                    System.arraycopy(added.categoryIds, ~row, categoryIdsOut, offset, length);
+                }
+            } else {
+                if (amountsOut != null) {
+                    mapped.amounts.get(row, amountsOut, offset, length);
+                }
+                if (epochDaysOut != null) {
+                    mapped.epochDays.get(row, epochDaysOut, offset, length);
+                }
+                if (categoryIdsOut != null) {
+                    mapped.categoryIds.get(row, categoryIdsOut, offset, length);
+                }
+            }
+            index += length;
+        }
+    }
+
+    /**
+     * Translates a list index into a row of the mapped snapshot, or into ~i
+     * for the i-th added row. Each row edited, removed or inserted in the
+     * middle splits a piece, and changes re-index the pieces after theirs,
+     * so a change costs O(pieces). Pieces join again when the rows between
+     * them are removed and when the ledger is rebased onto a save, so there
+     * are at most about two per change since the last snapshot.
+     */
+    private int row(int index) {
+        checkIndex(index);
+        int p = piece(index);
+        return advance(pieceRow[p], p == 0 ? index : index - pieceEnd[p - 1]);
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+    }
+
+    /** Returns the piece holding a list index. */
+    private int piece(int index) {
+        int low = 0;
+        int high = pieceCount - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (pieceEnd[mid] <= index) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /** Moves an encoded row forward within its source; added rows count downwards from -1. */
+    private static int advance(int row, int count) {
+        return row >= 0 ? row + count : row - count;
+    }
+
+    /** Writes an expense after the added rows and returns its number among them. */
+    private int append(Expense expense) {
+        String note = expense.getNote();
+        byte[] noteBytes = note == null ? new byte[0] : note.getBytes(StandardCharsets.UTF_8);
+        int noteEnd = added.noteOffsets[addedCount];
+        if (sharedColumns || addedCount == added.amounts.length
+                || noteEnd + noteBytes.length > added.notes.length) {
+            int capacity = addedCount == added.amounts.length ? Math.max(16, addedCount * 2) : added.amounts.length;
+            int noteCapacity = Math.max(added.notes.length, 256);
+            while (noteEnd + noteBytes.length > noteCapacity) {
+                noteCapacity *= 2;
+            }
+            added = added.copy(addedCount, capacity, noteCapacity);
+            sharedColumns = false;
+        }
+        int row = addedCount;
+        added.amounts[row] = expense.getAmountCents();
+        added.epochDays[row] = Math.toIntExact(expense.getEpochDay());
+        added.categoryIds[row] = expense.getCategoryId();
+        System.arraycopy(noteBytes, 0, added.notes, noteEnd, noteBytes.length);
+        added.noteOffsets[row + 1] = noteEnd + noteBytes.length;
+        addedCount++;
+        return row;
+    }
+
+    /** Returns a row's values as an Expense of its own, which holds on to no columns. */
+    private Expense copy(int row) {
+        if (row < 0) {
+            return new Expense(added.amounts[~row], added.categoryIds[~row],
+                    LocalDate.ofEpochDay(added.epochDays[~row]), added.note(~row));
+        }
+        return new Expense(mapped.amounts.get(row), mapped.categoryIds.get(row),
+                LocalDate.ofEpochDay(mapped.epochDays.get(row)), mapped.note(row));
+    }
+
+    /** Takes a row out of the piece list, leaving its columns to be reclaimed by compacting. */
+    private void unlink(int index) {
+        int p = piece(index);
+        int start = p == 0 ? 0 : pieceEnd[p - 1];
+        int row = advance(pieceRow[p], index - start);
+        if (index > start && index < pieceEnd[p] - 1) {
+            // Split the piece around the row
+            insertPiece(p + 1, advance(row, 1), pieceEnd[p]);
+            pieceEnd[p] = index + 1;
+        } else if (index == start) {
+            pieceRow[p] = advance(row, 1);
+        }
+        for (int k = p; k < pieceCount; k++) {
+            pieceEnd[k]--;
+        }
+        if (pieceEnd[p] == start) {
+            removePiece(p);
+            joinAt(p);
+        }
+        if (row < 0) {
+            deadCount++;
+        }
+    }
+
+    /** Joins a piece onto the one before it if its rows continue that one's in their source. */
+    private void joinAt(int p) {
+        if (p > 0 && p < pieceCount
+                && advance(pieceRow[p - 1], pieceEnd[p - 1] - (p == 1 ? 0 : pieceEnd[p - 2])) == pieceRow[p]) {
+            pieceEnd[p - 1] = pieceEnd[p];
+            removePiece(p);
+        }
+    }
+
+    /**
+     * Copies the live added rows into new columns in list order once most
+     * added rows are dead, and joins the pieces that become consecutive.
+     * Snapshots and views keep the old columns.
+     */
+    private void compactIfSparse() {
+        if (deadCount <= COMPACT_THRESHOLD || deadCount <= addedCount / 2) {
+            return;
+        }
+        int live = addedCount - deadCount;
+        int noteBytes = 0;
+        for (int p = 0; p < pieceCount; p++) {
+            if (pieceRow[p] < 0) {
+                int first = ~pieceRow[p];
+                int length = pieceEnd[p] - (p == 0 ? 0 : pieceEnd[p - 1]);
+                noteBytes += added.noteOffsets[first + length] - added.noteOffsets[first];
+            }
+        }
+        Columns compacted = new Columns(Math.max(16, live), Math.max(256, noteBytes));
+        int rows = 0;
+        int joined = 0;
+        for (int p = 0; p < pieceCount; p++) {
+            int length = pieceEnd[p] - (p == 0 ? 0 : pieceEnd[p - 1]);
+            int row = pieceRow[p];
+            if (row < 0) {
+                int first = ~row;
+                System.arraycopy(added.amounts, first, compacted.amounts, rows, length);
+                System.arraycopy(added.epochDays, first, compacted.epochDays, rows, length);
+                System.arraycopy(added.categoryIds, first, compacted.categoryIds, rows, length);
+                int noteStart = added.noteOffsets[first];
+                int noteEnd = compacted.noteOffsets[rows];
+                System.arraycopy(added.notes, noteStart, compacted.notes, noteEnd,
+                        added.noteOffsets[first + length] - noteStart);
+                for (int i = 1; i <= length; i++) {
+                    compacted.noteOffsets[rows + i] = noteEnd + added.noteOffsets[first + i] - noteStart;
+                }
+                row = ~rows;
+                rows += length;
+            }
+            if (joined > 0 && advance(pieceRow[joined - 1],
+                    pieceEnd[joined - 1] - (joined == 1 ? 0 : pieceEnd[joined - 2])) == row) {
+                pieceEnd[joined - 1] = pieceEnd[p];
+            } else {
+                pieceRow[joined] = row;
+                pieceEnd[joined] = pieceEnd[p];
+                joined++;
+            }
+        }
+        pieceCount = joined;
+        added = compacted;
+        addedCount = rows;
+        deadCount = 0;
+        sharedColumns = false;
+        compactions++;
+    }
+
+    private void insertRow(int index, int row) {
+        int p = pieceCount;
+        if (index < size()) {
+            p = piece(index);
+            int start = p == 0 ? 0 : pieceEnd[p - 1];
+            if (index > start) {
+                insertPiece(p + 1, advance(pieceRow[p], index - start), pieceEnd[p]);
+                pieceEnd[p] = index;
+                p++;
+            }
+        }
+        int before = p - 1;
+        if (before >= 0 && pieceRow[before] < 0
+                && advance(pieceRow[before], pieceEnd[before] - (before == 0 ? 0 : pieceEnd[before - 1])) == row) {
+            // The row continues the added rows just before it, as appended rows do
+            p = before;
+        } else {
+            insertPiece(p, row, index);
+        }
+        for (int k = p; k < pieceCount; k++) {
+            pieceEnd[k]++;
+        }
+    }
+
+    private void insertPiece(int p, int row, int end) {
+        if (pieceCount == pieceRow.length) {
+            pieceRow = Arrays.copyOf(pieceRow, pieceCount * 2);
+            pieceEnd = Arrays.copyOf(pieceEnd, pieceCount * 2);
+        }
+        System.arraycopy(pieceRow, p, pieceRow, p + 1, pieceCount - p);
+        System.arraycopy(pieceEnd, p, pieceEnd, p + 1, pieceCount - p);
+        pieceRow[p] = row;
+        pieceEnd[p] = end;
+        pieceCount++;
+    }
+
+    private void removePiece(int p) {
+        System.arraycopy(pieceRow, p + 1, pieceRow, p, pieceCount - p - 1);
+        System.arraycopy(pieceEnd, p + 1, pieceEnd, p, pieceCount - p - 1);
+        pieceCount--;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,560 @@
+package expensetracker;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32C;
+
+/**
+ * Reads and writes the versioned columnar ledger file. All values are
+ * big-endian:
+ *
+ * <pre>
+ * int    magic, version
+ * long   journal generation and offset the snapshot covers (since version 6)
+ * int    dictionary size, then per entry: int length + UTF-8 bytes (length -1
+ *        for an id that was merged away or forgotten), and since version 4
+ *        int id the entry resolves to (before, every entry resolved to itself)
+ * int    category count, then int[count] dictionary ids of the category list
+ * int    recurring rule count (since version 3), then per rule:
+ *        int id, long amount in cents, int dictionary id,
+ *        int interval (0 day, 1 week, 2 month, 3 year), int every,
+ *        long start epoch day, long end epoch day (Long.MAX_VALUE: no end),
+ *        int occurrences generated, int length + UTF-8 note
+ * int    budget count (since version 5), then per budget:
+ *        int dictionary id (-1 for all expenses), long monthly limit in cents
+ * int    row count
+ * int    CRC32C of everything before it (since version 7)
+ * long[rows]       amounts in cents (version 1 stored double[rows] amounts)
+ * int[rows]        epoch days
+ * int[rows]        category dictionary ids
+ * int[rows + 1]    note offsets into the note heap
+ * byte[]           note heap (UTF-8)
+ * int    CRC32C of the columns (since version 7; version 6 has a CRC32C of
+ *        the whole file here instead)
+ * </pre>
+ *
+ * Dictionary ids are written as they are, merged ones included, so an id
+ * means the same category before and after a snapshot and journaled undo
+ * records can refer to it.
+ * <p>
+ * The file is opened with a memory map and handed to {@link Ledger} without
+ * decoding any rows, so a snapshot is always written to a temporary file,
+ * fsynced and renamed over the old one rather than rewritten in place. A
+ * crash therefore leaves either the old snapshot or the new one, and the
+ * checksums catch a file damaged any other way. Opening checks only the
+ * header's, so it costs the same however many rows there are; the columns
+ * are checked by {@link Contents#verify()}, which reads all of them and is
+ * meant for a background thread.
+ */
+class LedgerFile {
+
+    /** Expenses, categories, recurring rules and budgets read from a ledger file. */
+    static final class Contents {
+        final Ledger expenses;
+        final CategoryDictionary categories;
+        final List<RecurringRule> rules;
+        /** Monthly limits in cents by dictionary id, or Budgets.OVERALL. */
+        final Map<Integer, Long> budgets;
+        /** The journal position the snapshot covers; see {@link ExpenseJournal#open}. */
+        final long journalGeneration;
+        final long journalOffset;
+        // The bytes verify() checks and their checksum; null for files before version 6
+        private final ByteBuffer checked;
+        private final int checksum;
+
+        Contents(Ledger expenses, CategoryDictionary categories, List<RecurringRule> rules,
+                Map<Integer, Long> budgets, long journalGeneration, long journalOffset) {
+            this(expenses, categories, rules, budgets, journalGeneration, journalOffset, null, 0);
+        }
+
+        Contents(Ledger expenses, CategoryDictionary categories, List<RecurringRule> rules,
+                Map<Integer, Long> budgets, long journalGeneration, long journalOffset, ByteBuffer checked,
+                int checksum) {
+            this.expenses = expenses;
+            this.categories = categories;
+            this.rules = rules;
+            this.budgets = budgets;
+            this.journalGeneration = journalGeneration;
+            this.journalOffset = journalOffset;
+            this.checked = checked;
+            this.checksum = checksum;
+        }
+
+        /**
+         * Returns false if the columns do not match their checksum. Reads
+         * every row, so it takes as long as the file is large.
+         */
+        boolean verify() {
+            if (checked == null) {
+                return true;
+            }
+            CRC32C crc = new CRC32C();
+            crc.update(checked.duplicate());
+            return (int) crc.getValue() == checksum;
+        }
+    }
+
+    /**
+     * What a snapshot writes, copied while the store is locked so that the
+     * file can be written without the lock. Only the ledger's lists of
+     * changes and the dictionary are copied; the rows themselves are shared.
+     */
+    static final class Snapshot {
+        final Ledger expenses;
+        final String[] entries;
+        final int[] canonical;
+        final int[] order;
+        final List<RecurringRule> rules;
+        final Map<Integer, Long> budgets;
+        final long journalGeneration;
+        final long journalOffset;
+
+        Snapshot(Ledger expenses, Collection<RecurringRule> rules, Map<Integer, Long> budgets,
+                long journalGeneration, long journalOffset) {
+            CategoryDictionary categories = expenses.categories();
+            synchronized (categories) {
+                entries = new String[categories.capacity()];
+                canonical = new int[entries.length];
+                for (int id = 0; id < entries.length; id++) {
+                    entries[id] = categories.entry(id);
+                    canonical[id] = categories.resolve(id);
+                }
+                order = categories.order();
+            }
+            this.expenses = expenses.snapshot();
+            this.rules = List.copyOf(rules);
+            this.budgets = new LinkedHashMap<>(budgets);
+            this.journalGeneration = journalGeneration;
+            this.journalOffset = journalOffset;
+        }
+    }
+
+    private static final int MAGIC = 0x4558504C; // "EXPL"
+    private static final int VERSION = 7;
+    private static final int WRITE_BUFFER_SIZE = 1 << 20;
+    private static final String RETIRED_SUFFIX = ".old";
+    // Rows of a column copied out of the ledger at a time
+    private static final int COLUMN_CHUNK_ROWS = 1 << 16;
+
+    private LedgerFile() {
+    }
+
+    /** Writes a snapshot of a ledger without recurring rules or budgets. */
+    static void write(File file, Ledger expenses) throws IOException {
+        write(file, new Snapshot(expenses, List.of(), Map.of(), 0, 0), null);
+    }
+
+    /**
+     * Writes a snapshot to a temporary file, fsyncs it and renames it over the
+     * file. If backup is not null, the file being replaced is first renamed to
+     * it, so the last good snapshot survives until the next one is written.
+     * The old backup is renamed away before that rather than replaced, since
+     * it may still be mapped; see retire().
+     */
+    static void write(File file, Snapshot snapshot, File backup) throws IOException {
+        Ledger expenses = snapshot.expenses;
+        int rows = expenses.size();
+
+        File tempFile = new File(file.getPath() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tempFile.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ColumnWriter out = new ColumnWriter(channel);
+            out.putInt(MAGIC);
+            out.putInt(VERSION);
+            out.putLong(snapshot.journalGeneration);
+            out.putLong(snapshot.journalOffset);
+
+            out.putInt(snapshot.entries.length);
+            for (int id = 0; id < snapshot.entries.length; id++) {
+                if (snapshot.entries[id] == null) {
+                    out.putInt(-1);
+                } else {
+                    byte[] bytes = snapshot.entries[id].getBytes(StandardCharsets.UTF_8);
+                    out.putInt(bytes.length);
+                    out.put(bytes);
+                }
+                out.putInt(snapshot.canonical[id]);
+            }
+            out.putInt(snapshot.order.length);
+            for (int id : snapshot.order) {
+                out.putInt(id);
+            }
+
+            out.putInt(snapshot.rules.size());
+            for (RecurringRule rule : snapshot.rules) {
+                out.putInt(rule.id);
+                out.putLong(rule.amountCents);
+                out.putInt(rule.categoryId);
+                out.putInt(rule.interval.ordinal());
+                out.putInt(rule.every);
+                out.putLong(rule.startDate.toEpochDay());
+                out.putLong(rule.endDate == null ? Long.MAX_VALUE : rule.endDate.toEpochDay());
+                out.putInt(rule.generated);
+                byte[] note = (rule.note == null ? "" : rule.note).getBytes(StandardCharsets.UTF_8);
+                out.putInt(note.length);
+                out.put(note);
+            }
+
+            out.putInt(snapshot.budgets.size());
+            for (Map.Entry<Integer, Long> budget : snapshot.budgets.entrySet()) {
+                out.putInt(budget.getKey());
+                out.putLong(budget.getValue());
+            }
+
+            out.putInt(rows);
+            out.putChecksum();
+            long[] amounts = new long[Math.min(rows, COLUMN_CHUNK_ROWS)];
+            int[] values = new int[amounts.length];
+            for (int start = 0; start < rows; start += COLUMN_CHUNK_ROWS) {
+                int length = Math.min(rows - start, COLUMN_CHUNK_ROWS);
+                expenses.readColumns(start, start + length, amounts, null, null);
+                for (int i = 0; i < length; i++) {
+                    out.putLong(amounts[i]);
+                }
+            }
+            for (int start = 0; start < rows; start += COLUMN_CHUNK_ROWS) {
+                int length = Math.min(rows - start, COLUMN_CHUNK_ROWS);
+                expenses.readColumns(start, start + length, null, values, null);
+                for (int i = 0; i < length; i++) {
+                    out.putInt(values[i]);
+                }
+            }
+            for (int start = 0; start < rows; start += COLUMN_CHUNK_ROWS) {
+                int length = Math.min(rows - start, COLUMN_CHUNK_ROWS);
+                expenses.readColumns(start, start + length, null, null, values);
+                for (int i = 0; i < length; i++) {
+                    out.putInt(values[i]);
+                }
+            }
+            int offset = 0;
+            out.putInt(offset);
+            for (int i = 0; i < rows; i++) {
+                offset += utf8Length(expenses.noteAt(i));
+                out.putInt(offset);
+            }
+            for (int i = 0; i < rows; i++) {
+                String note = expenses.noteAt(i);
+                if (note != null) {
+                    out.put(note.getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            out.finish();
+        }
+        if (backup != null && file.exists()) {
+            retire(backup);
+            Files.move(file.toPath(), backup.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        }
+        Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory(file.getAbsoluteFile().getParentFile());
+    }
+
+    /**
+     * Maps the file and returns a ledger that reads its columns in place. Only
+     * the header and the category dictionary are decoded up front.
+     */
+    static Contents read(File file) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        if (buffer.remaining() < 8 || buffer.getInt() != MAGIC) {
+            throw new IOException(file + " is not a ledger file");
+        }
+        int version = buffer.getInt();
+        if (version < 1 || version > VERSION) {
+            throw new IOException("Unsupported ledger version " + version);
+        }
+        try {
+            return decode(file, buffer, version);
+        } catch (RuntimeException e) {
+            // Only version 7 checks a header at opening; before, damage shows up as bad offsets or lengths
+            throw new IOException(file + " is damaged: " + e, e);
+        }
+    }
+
+    private static Contents decode(File file, MappedByteBuffer buffer, int version) throws IOException {
+        int end = buffer.limit();
+        long journalGeneration = 0;
+        long journalOffset = 0;
+        if (version >= 6) {
+            end -= Integer.BYTES;
+            journalGeneration = buffer.getLong();
+            journalOffset = buffer.getLong();
+        }
+
+        // Dictionary entries are dictionary ids in file order, so the category column is used as is
+        String[] entries = new String[buffer.getInt()];
+        int[] canonical = new int[entries.length];
+        for (int id = 0; id < entries.length; id++) {
+            int length = buffer.getInt();
+            if (length >= 0) {
+                byte[] bytes = new byte[length];
+                buffer.get(bytes);
+                entries[id] = new String(bytes, StandardCharsets.UTF_8);
+            }
+            canonical[id] = version >= 4 ? buffer.getInt() : id;
+        }
+        int[] order = new int[buffer.getInt()];
+        Set<String> listed = new HashSet<>();
+        for (int i = 0; i < order.length; i++) {
+            order[i] = buffer.getInt();
+            if (entries[order[i]] == null || !listed.add(entries[order[i]])) {
+                throw new IOException(file + " has a duplicate or missing category in its list");
+            }
+        }
+        CategoryDictionary categories = new CategoryDictionary(entries, canonical, order);
+
+        List<RecurringRule> rules = new ArrayList<>();
+        int ruleCount = version >= 3 ? buffer.getInt() : 0;
+        for (int i = 0; i < ruleCount; i++) {
+            int id = buffer.getInt();
+            long amount = buffer.getLong();
+            int categoryId = buffer.getInt();
+            ReportEngine.Interval interval = ReportEngine.Interval.values()[buffer.getInt()];
+            int every = buffer.getInt();
+            LocalDate startDate = LocalDate.ofEpochDay(buffer.getLong());
+            long endDay = buffer.getLong();
+            int generated = buffer.getInt();
+            byte[] note = new byte[buffer.getInt()];
+            buffer.get(note);
+            rules.add(new RecurringRule(id, amount, categoryId, new String(note, StandardCharsets.UTF_8), interval,
+                    every, startDate, endDay == Long.MAX_VALUE ? null : LocalDate.ofEpochDay(endDay), generated));
+        }
+
+        Map<Integer, Long> budgets = new LinkedHashMap<>();
+        int budgetCount = version >= 5 ? buffer.getInt() : 0;
+        for (int i = 0; i < budgetCount; i++) {
+            int id = buffer.getInt();
+            budgets.put(id, buffer.getLong());
+        }
+
+        int rows = buffer.getInt();
+        int position = buffer.position();
+        if (version >= 7) {
+            CRC32C checksum = new CRC32C();
+            checksum.update(buffer.slice(0, position));
+            if ((int) checksum.getValue() != buffer.getInt(position)) {
+                throw new IOException(file + " is damaged: its header checksum does not match");
+            }
+            position += Integer.BYTES;
+        }
+        int columnsStart = position;
+        LongBuffer amounts;
+        if (version == 1) {
+            // Older files hold doubles; convert them once, the next snapshot is written in cents
+            DoubleBuffer doubles = buffer.slice(position, rows * Double.BYTES).asDoubleBuffer();
+            long[] cents = new long[rows];
+            for (int i = 0; i < rows; i++) {
+                cents[i] = Math.round(doubles.get(i) * 100);
+            }
+            amounts = LongBuffer.wrap(cents);
+        } else {
+            amounts = buffer.slice(position, rows * Long.BYTES).asLongBuffer();
+        }
+        position += rows * Long.BYTES;
+        ByteBuffer epochDays = buffer.slice(position, rows * Integer.BYTES);
+        position += rows * Integer.BYTES;
+        ByteBuffer categoryIds = buffer.slice(position, rows * Integer.BYTES);
+        position += rows * Integer.BYTES;
+        ByteBuffer noteOffsets = buffer.slice(position, (rows + 1) * Integer.BYTES);
+        position += (rows + 1) * Integer.BYTES;
+        ByteBuffer noteHeap = buffer.slice(position, end - position);
+        // The columns are checked in the background, but a file cut short is caught here already
+        if (noteOffsets.getInt(0) != 0 || noteOffsets.getInt(rows * Integer.BYTES) != noteHeap.limit()) {
+            throw new IOException(file + " is damaged: its notes do not fill the file");
+        }
+
+        Ledger expenses = new Ledger(categories, amounts, epochDays.asIntBuffer(),
+                categoryIds.asIntBuffer(), noteOffsets.asIntBuffer(), noteHeap);
+        if (version < 6) {
+            return new Contents(expenses, categories, rules, budgets, journalGeneration, journalOffset);
+        }
+        int checkedStart = version >= 7 ? columnsStart : 0;
+        return new Contents(expenses, categories, rules, budgets, journalGeneration, journalOffset,
+                buffer.slice(checkedStart, end - checkedStart), buffer.getInt(end));
+    }
+
+    /** Reads the Java-serialized expenses.dat format used before the columnar ledger. */
+    @SuppressWarnings("unchecked")
+    static Contents readLegacy(File file) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream ois = new LegacyInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            Ledger expenses = new Ledger();
+            CategoryDictionary categories = expenses.categories();
+            List<LegacyExpense> legacyExpenses = (List<LegacyExpense>) ois.readObject();
+            for (String category : (List<String>) ois.readObject()) {
+                categories.intern(category);
+            }
+            for (LegacyExpense legacy : legacyExpenses) {
+                expenses.add(new Expense(Math.round(legacy.amount * 100), categories.intern(legacy.category),
+                        legacy.date, legacy.note));
+            }
+            return new Contents(expenses, categories, List.of(), Map.of(), 0, 0);
+        }
+    }
+
+    /** The fields of Expense as it was serialized into expenses.dat, when amounts were doubles. */
+    private static final class LegacyExpense implements Serializable {
+        private static final long serialVersionUID = 2294060919579809678L;
+
+        private double amount;
+        private String category;
+        private LocalDate date;
+        private String note;
+    }
+
+    /** Reads serialized Expense objects as LegacyExpense. */
+    private static final class LegacyInputStream extends ObjectInputStream {
+        LegacyInputStream(InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected ObjectStreamClass readClassDescriptor() throws IOException, ClassNotFoundException {
+            ObjectStreamClass descriptor = super.readClassDescriptor();
+            if (descriptor.getName().equals("Expense")) {
+                return ObjectStreamClass.lookup(LegacyExpense.class);
+            }
+            return descriptor;
+        }
+    }
+
+    private static int utf8Length(String s) {
+        if (s == null) {
+            return 0;
+        }
+        int length = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length()
+                    && Character.isLowSurrogate(s.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                length++; // Unpaired surrogates are encoded as '?'
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Renames a file about to be replaced to a name of its own, then deletes
+     * it. A ledger maps the file it was read from until it is rebased onto a
+     * later save, and on Windows a mapped file can be renamed but neither
+     * replaced nor deleted, so one that cannot be deleted yet is left for
+     * the next call to delete.
+     */
+    private static void retire(File file) throws IOException {
+        File directory = file.getAbsoluteFile().getParentFile();
+        String prefix = file.getName() + ".";
+        File[] retired = directory.listFiles((dir, name) -> name.startsWith(prefix) && name.endsWith(RETIRED_SUFFIX));
+        if (retired != null) {
+            for (File old : retired) {
+                old.delete();
+            }
+        }
+        if (file.exists()) {
+            File target = Files.createTempFile(directory.toPath(), prefix, RETIRED_SUFFIX).toFile();
+            Files.move(file.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            target.delete();
+        }
+    }
+
+    /** Fsyncs a directory so that a rename in it is durable; not every platform can open one. */
+    private static void syncDirectory(File directory) {
+        try (FileChannel channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // The rename is still atomic, only possibly not yet durable
+        }
+    }
+
+    /** Streams primitive columns to a channel through one reusable buffer, checksumming what it writes. */
+    private static final class ColumnWriter {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+        private final CRC32C checksum = new CRC32C();
+
+        ColumnWriter(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void putInt(int value) throws IOException {
+            ensure(Integer.BYTES);
+            buffer.putInt(value);
+        }
+
+        void putLong(long value) throws IOException {
+            ensure(Long.BYTES);
+            buffer.putLong(value);
+        }
+
+        void put(byte[] bytes) throws IOException {
+            int offset = 0;
+            while (offset < bytes.length) {
+                ensure(1);
+                int length = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.put(bytes, offset, length);
+                offset += length;
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            checksum.update(buffer.duplicate());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        /** Writes what is buffered and the checksum of everything since the last one. */
+        void putChecksum() throws IOException {
+            flush();
+            buffer.putInt((int) checksum.getValue());
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+            checksum.reset();
+        }
+
+        /** Writes what is buffered and the checksum footer, and fsyncs the file. */
+        void finish() throws IOException {
+            putChecksum();
+            channel.force(true);
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+    }
+}
\ No newline at end of file
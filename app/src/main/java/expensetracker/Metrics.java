@@ -0,0 +1,322 @@
+package expensetracker;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide latency timers and counters of the main operations, shown in
+ * the Diagnostics tab and exported with it for bug reports. A timer records
+ * each run into a histogram of fixed-size buckets, as HdrHistogram does, so
+ * recording costs a few atomic increments, and percentiles stay within 1.6%
+ * however many runs there were. Timed runs also count the bytes their thread
+ * allocated, where the JVM can tell, and are reported to Java Flight
+ * Recorder as {@link OperationEvent}s while a recording is on; the event is
+ * only created then. Any thread may record.
+ */
+final class Metrics {
+
+    /** Counts rows or other work done, such as rows scanned by searches and exports. */
+    static final class Counter {
+        final String name;
+        private final LongAdder value = new LongAdder();
+
+        private Counter(String name) {
+            this.name = name;
+        }
+
+        void add(long amount) {
+            value.add(amount);
+        }
+
+        void increment() {
+            value.increment();
+        }
+
+        long get() {
+            return value.sum();
+        }
+
+        void reset() {
+            value.reset();
+        }
+    }
+
+    /**
+     * Durations in nanoseconds, counted in buckets whose width grows with the
+     * value: values below 128 get a bucket each, and each power of two above
+     * that is split into 64 buckets, so a value is known to within 1/64.
+     * Values above 2^47 ns, about 39 hours, count as 2^47 ns.
+     */
+    static final class Histogram {
+        private static final int SUB_BUCKET_BITS = 7;
+        private static final int HALF_BUCKETS = 1 << (SUB_BUCKET_BITS - 1);
+        private static final int MAX_SHIFT = 40;
+        private static final long MAX_VALUE = (2L * HALF_BUCKETS << MAX_SHIFT) - 1;
+
+        private final AtomicLongArray counts = new AtomicLongArray((MAX_SHIFT + 2) * HALF_BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+
+        void record(long value) {
+            value = Math.max(0, Math.min(value, MAX_VALUE));
+            counts.incrementAndGet(index(value));
+            count.increment();
+            sum.add(value);
+            max.accumulateAndGet(value, Math::max);
+        }
+
+        /** Returns a copy; runs recorded meanwhile may be partly included. */
+        Distribution distribution() {
+            long[] copy = new long[counts.length()];
+            for (int i = 0; i < copy.length; i++) {
+                copy[i] = counts.get(i);
+            }
+            return new Distribution(copy, count.sum(), sum.sum(), max.get());
+        }
+
+        void reset() {
+            for (int i = 0; i < counts.length(); i++) {
+                counts.set(i, 0);
+            }
+            count.reset();
+            sum.reset();
+            max.set(0);
+        }
+
+        static int index(long value) {
+            if (value < 2 * HALF_BUCKETS) {
+                return (int) value;
+            }
+            int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+            return (shift << (SUB_BUCKET_BITS - 1)) + (int) (value >>> shift);
+        }
+
+        /** The largest value that falls into a bucket. */
+        static long highestValue(int index) {
+            if (index < 2 * HALF_BUCKETS) {
+                return index;
+            }
+            int shift = index / HALF_BUCKETS - 1;
+            long subBucket = index - ((long) shift << (SUB_BUCKET_BITS - 1));
+            return ((subBucket + 1) << shift) - 1;
+        }
+    }
+
+    /** A copy of a histogram's counts, with percentiles in nanoseconds. */
+    static final class Distribution {
+        private final long[] counts;
+        final long count;
+        final long sum;
+        final long max;
+
+        private Distribution(long[] counts, long count, long sum, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        double mean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        /** The value that the given percent of the runs did not exceed, or 0 if there were none. */
+        long percentile(double percent) {
+            long total = 0;
+            for (long c : counts) {
+                total += c;
+            }
+            long rank = Math.max(1, (long) Math.ceil(percent / 100 * total));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(Histogram.highestValue(i), max);
+                }
+            }
+            return 0;
+        }
+    }
+
+    /** Times one kind of operation. */
+    static final class Timer {
+        final String name;
+        private final Histogram histogram = new Histogram();
+        private final LongAdder allocatedBytes = new LongAdder();
+
+        private Timer(String name) {
+            this.name = name;
+        }
+
+        /** Starts timing a run, which ends when the sample is closed, in a finally block. */
+        Sample start() {
+            return new Sample(this);
+        }
+
+        Distribution distribution() {
+            return histogram.distribution();
+        }
+
+        /** Bytes allocated by all runs together, or 0 if the JVM does not measure allocation. */
+        long allocatedBytes() {
+            return allocatedBytes.sum();
+        }
+    }
+
+    /** One timed run. */
+    static final class Sample {
+        private final Timer timer;
+        private final long startAllocated;
+        private final OperationEvent event;
+        private final long start;
+
+        private Sample(Timer timer) {
+            this.timer = timer;
+            this.startAllocated = allocatedBytes();
+            this.event = JFR && OperationEvent.isRecorded() ? OperationEvent.begin(timer.name) : null;
+            this.start = System.nanoTime();
+        }
+
+        void close() {
+            timer.histogram.record(System.nanoTime() - start);
+            if (startAllocated >= 0) {
+                timer.allocatedBytes.add(allocatedBytes() - startAllocated);
+            }
+            if (event != null) {
+                event.finish();
+            }
+        }
+    }
+
+    // Flight Recorder is a separate module, which a trimmed runtime may leave out
+    private static final boolean JFR = ModuleLayer.boot().findModule("jdk.jfr").isPresent();
+    private static final com.sun.management.ThreadMXBean THREADS = allocationCounter();
+
+    private static final Map<String, Timer> TIMERS = new ConcurrentSkipListMap<>();
+    private static final Map<String, Counter> COUNTERS = new ConcurrentSkipListMap<>();
+
+    private Metrics() {
+    }
+
+    /** Returns the timer of a name, creating it on first use. */
+    static Timer timer(String name) {
+        return TIMERS.computeIfAbsent(name, Timer::new);
+    }
+
+    /** Returns the counter of a name, creating it on first use. */
+    static Counter counter(String name) {
+        return COUNTERS.computeIfAbsent(name, Counter::new);
+    }
+
+    /** Every timer, sorted by name. */
+    static List<Timer> timers() {
+        return new ArrayList<>(TIMERS.values());
+    }
+
+    /** Every counter, sorted by name. */
+    static List<Counter> counters() {
+        return new ArrayList<>(COUNTERS.values());
+    }
+
+    /** Forgets everything recorded so far; timers and counters in use keep working. */
+    static void reset() {
+        for (Timer timer : TIMERS.values()) {
+            timer.histogram.reset();
+            timer.allocatedBytes.reset();
+        }
+        COUNTERS.values().forEach(Counter::reset);
+    }
+
+    /**
+     * Writes a summary of every timer that ran and every counter to a text
+     * file, followed by the full distribution of each timer: for every non-empty bucket, its
+     * highest value, the share of runs at or below it and their number.
+     */
+    static void export(File file) throws IOException {
+        try (PrintWriter out = new PrintWriter(new BufferedWriter(
+                new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)))) {
+            Runtime runtime = Runtime.getRuntime();
+            out.printf("Expense tracker diagnostics, %s%n", LocalDateTime.now().withNano(0));
+            out.printf("Java %s (%s), %s %s, %d processors, %d MB maximum heap%n%n",
+                    System.getProperty("java.version"), System.getProperty("java.vendor"),
+                    System.getProperty("os.name"), System.getProperty("os.arch"), runtime.availableProcessors(),
+                    runtime.maxMemory() >> 20);
+
+            out.printf("%-20s %10s %12s %12s %12s %12s %12s %12s %14s%n", "Timer (ms)", "Count", "Mean", "p50",
+                    "p90", "p99", "p99.9", "Max", "Alloc/run KB");
+            List<Timer> timers = new ArrayList<>();
+            List<Distribution> distributions = new ArrayList<>();
+            for (Timer timer : timers()) {
+                Distribution d = timer.distribution();
+                if (d.count == 0) {
+                    continue;
+                }
+                timers.add(timer);
+                distributions.add(d);
+                out.printf("%-20s %10d %12.3f %12.3f %12.3f %12.3f %12.3f %12.3f %14.1f%n", timer.name, d.count,
+                        millis(d.mean()), millis(d.percentile(50)), millis(d.percentile(90)),
+                        millis(d.percentile(99)), millis(d.percentile(99.9)), millis(d.max),
+                        timer.allocatedBytes() / 1024.0 / d.count);
+            }
+
+            out.printf("%n%-20s %10s%n", "Counter", "Value");
+            for (Counter counter : counters()) {
+                out.printf("%-20s %10d%n", counter.name, counter.get());
+            }
+
+            for (int t = 0; t < timers.size(); t++) {
+                Distribution d = distributions.get(t);
+                out.printf("%nDistribution of %s%n%14s %12s %10s%n", timers.get(t).name, "Value (ms)",
+                        "Percentile", "Count");
+                long seen = 0;
+                long total = 0;
+                for (long c : d.counts) {
+                    total += c;
+                }
+                for (int i = 0; i < d.counts.length; i++) {
+                    if (d.counts[i] > 0) {
+                        seen += d.counts[i];
+                        out.printf("%14.3f %12.6f %10d%n", millis(Math.min(Histogram.highestValue(i), d.max)),
+                                (double) seen / total, seen);
+                    }
+                }
+            }
+            if (out.checkError()) {
+                throw new IOException("Error writing " + file);
+            }
+        }
+    }
+
+    static double millis(double nanos) {
+        return nanos / 1_000_000;
+    }
+
+    /** The bytes the current thread has allocated so far, or -1 if unknown. */
+    private static long allocatedBytes() {
+        return THREADS != null ? THREADS.getCurrentThreadAllocatedBytes() : -1;
+    }
+
+    private static com.sun.management.ThreadMXBean allocationCounter() {
+        try {
+            ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            if (threads instanceof com.sun.management.ThreadMXBean counter
+                    && counter.isThreadAllocatedMemorySupported() && counter.isThreadAllocatedMemoryEnabled()) {
+                return counter;
+            }
+        } catch (LinkageError e) {
+            // Running without the java.management module
+        }
+        return null;
+    }
+}
\ No newline at end of file
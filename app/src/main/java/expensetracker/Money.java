@@ -0,0 +1,84 @@
+package expensetracker;
+
+/**
+ * Helpers for amounts held as a long number of cents. Sums of cents are exact,
+ * and parsing and formatting work on the characters directly, so neither
+ * Double.parseDouble nor String.format is needed on hot paths.
+ */
+final class Money {
+
+    private Money() {
+    }
+
+    /**
+     * Parses an amount such as "12", "12.5", "-0.05" or ".99" into cents.
+     *
+     * @throws NumberFormatException if the text is not an amount with at most two decimals
+     */
+    static long parse(String text) {
+        String s = text.trim();
+        int length = s.length();
+        int i = 0;
+        boolean negative = false;
+        if (i < length && (s.charAt(i) == '-' || s.charAt(i) == '+')) {
+            negative = s.charAt(i) == '-';
+            i++;
+        }
+
+        try {
+            long units = 0;
+            int integerDigits = 0;
+            for (; i < length && isDigit(s.charAt(i)); i++) {
+                units = Math.addExact(Math.multiplyExact(units, 10), s.charAt(i) - '0');
+                integerDigits++;
+            }
+            long cents = 0;
+            int decimals = 0;
+            if (i < length && s.charAt(i) == '.') {
+                for (i++; i < length && isDigit(s.charAt(i)); i++) {
+                    if (++decimals > 2) {
+                        throw new NumberFormatException("Too many decimal places: " + text);
+                    }
+                    cents = cents * 10 + (s.charAt(i) - '0');
+                }
+            }
+            if (i != length || integerDigits + decimals == 0) {
+                throw new NumberFormatException("Invalid amount: " + text);
+            }
+            if (decimals == 1) {
+                cents *= 10;
+            }
+            long value = Math.addExact(Math.multiplyExact(units, 100), cents);
+            return negative ? -value : value;
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("Amount out of range: " + text);
+        }
+    }
+
+    /** Formats cents as an amount with exactly two decimals, e.g. "1234.50". */
+    static String format(long cents) {
+        return appendTo(new StringBuilder(24), cents).toString();
+    }
+
+    static StringBuilder appendTo(StringBuilder out, long cents) {
+        if (cents < 0) {
+            out.append('-');
+            cents = -cents;
+        }
+        out.append(cents / 100).append('.');
+        long fraction = cents % 100;
+        if (fraction < 10) {
+            out.append('0');
+        }
+        return out.append(fraction);
+    }
+
+    /** Converts cents to a double for display-only arithmetic such as chart angles. */
+    static double toDouble(long cents) {
+        return cents / 100.0;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
\ No newline at end of file
@@ -0,0 +1,46 @@
+package expensetracker;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A timed operation, such as loading the ledger or painting the table, as a
+ * Java Flight Recorder event. {@link Metrics} emits one per timed run, so a
+ * recording started with -XX:StartFlightRecording shows them on the timeline
+ * next to garbage collections and thread stalls. While no recording has
+ * the event enabled, none is created.
+ */
+@Name("expensetracker.Operation")
+@Label("Expense Tracker Operation")
+@Category("Expense Tracker")
+@Description("A timed run of a load, save, search, report or paint")
+class OperationEvent extends Event {
+
+    private static final EventType TYPE = EventType.getEventType(OperationEvent.class);
+
+    @Label("Operation")
+    String operation;
+
+    /** Returns true while a recording has the event enabled. */
+    static boolean isRecorded() {
+        return TYPE.isEnabled();
+    }
+
+    static OperationEvent begin(String operation) {
+        OperationEvent event = new OperationEvent();
+        event.operation = operation;
+        event.begin();
+        return event;
+    }
+
+    void finish() {
+        end();
+        if (shouldCommit()) {
+            commit();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,142 @@
+package expensetracker;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
+
+/**
+ * Pie chart of the category totals of a report. The slice model (cumulative
+ * angles, legend labels and tooltips) is built once per data change and the
+ * chart is rendered once per data or size change into an image, so a repaint
+ * is a single drawImage and a hover is a binary search over the slice angles
+ * with no allocation.
+ */
+class PieChartPanel extends JPanel {
+
+    private static final long serialVersionUID = 1L;
+    private static final Color[] COLORS = { Color.RED, Color.BLUE, Color.GREEN, Color.YELLOW, Color.CYAN,
+            Color.MAGENTA, Color.ORANGE, Color.PINK };
+    private static final String NO_DATA = "No data for this period";
+    private static final Metrics.Timer PAINT_TIMER = Metrics.timer("chart.paint");
+
+    // Slice model; slice i spans [startAngles[i], startAngles[i + 1]) degrees counterclockwise from 3 o'clock
+    private String[] labels = new String[0];
+    private String[] tooltips = new String[0];
+    private int[] startAngles = { 0 };
+
+    // Rendered chart and the geometry it was rendered with
+    private BufferedImage image;
+    private int centerX;
+    private int centerY;
+    private int radius;
+
+    PieChartPanel() {
+        ToolTipManager.sharedInstance().registerComponent(this);
+    }
+
+    /** Replaces the chart data; names and totals are parallel arrays. */
+    void setData(String[] names, long[] totals, long total) {
+        int slices = names.length;
+        labels = new String[slices];
+        tooltips = new String[slices];
+        startAngles = new int[slices + 1];
+        long cumulative = 0;
+        for (int i = 0; i < slices; i++) {
+            double percent = totals[i] * 100.0 / total;
+            labels[i] = names[i] + " (" + String.format("%.2f%%", percent) + ")";
+            tooltips[i] = String.format("<html><b>%s:</b> $%s (%.2f%%)</html>", names[i], Money.format(totals[i]),
+                    percent);
+            // Rounding the running total rather than each slice keeps the slices summing to 360 degrees
+            cumulative += totals[i];
+            startAngles[i + 1] = (int) Math.round(cumulative * 360.0 / total);
+        }
+        image = null;
+        repaint();
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        Metrics.Sample sample = PAINT_TIMER.start();
+        try {
+            super.paintComponent(g);
+            if (image == null || image.getWidth() != getWidth() || image.getHeight() != getHeight()) {
+                render();
+            }
+            g.drawImage(image, 0, 0, null);
+        } finally {
+            sample.close();
+        }
+    }
+
+    @Override
+    public String getToolTipText(MouseEvent event) {
+        if (labels.length == 0 || image == null) {
+            return null;
+        }
+        int dx = event.getX() - centerX;
+        int dy = event.getY() - centerY;
+        if ((long) dx * dx + (long) dy * dy > (long) radius * radius) {
+            return null;
+        }
+        // Screen y grows downwards while arcs are measured counterclockwise
+        double angle = Math.toDegrees(Math.atan2(-dy, dx));
+        if (angle < 0) {
+            angle += 360;
+        }
+        int slice = sliceAt(angle);
+        return slice < 0 ? null : tooltips[slice];
+    }
+
+    /** Returns the slice containing the angle, or -1 if it falls outside the rounded slices. */
+    private int sliceAt(double angle) {
+        int low = 0;
+        int high = labels.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (angle < startAngles[mid]) {
+                high = mid - 1;
+            } else if (angle >= startAngles[mid + 1]) {
+                low = mid + 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private void render() {
+        int width = Math.max(1, getWidth());
+        int height = Math.max(1, getHeight());
+        image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g.setFont(getFont());
+            if (labels.length == 0) {
+                g.setColor(Color.BLACK);
+                g.drawString(NO_DATA, 10, 20);
+                radius = 0;
+                return;
+            }
+
+            int size = Math.max(0, Math.min(width, height) - 40);
+            int x = (width - size) / 2;
+            int y = (height - size) / 2;
+            centerX = x + size / 2;
+            centerY = y + size / 2;
+            radius = size / 2;
+
+            for (int i = 0; i < labels.length; i++) {
+                g.setColor(COLORS[i % COLORS.length]);
+                g.fillArc(x, y, size, size, startAngles[i], startAngles[i + 1] - startAngles[i]);
+
+                g.fillRect(width - 200, 20 + i * 20, 10, 10);
+                g.setColor(Color.BLACK);
+                g.drawString(labels[i], width - 180, 30 + i * 20);
+            }
+        } finally {
+            g.dispose();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,90 @@
+package expensetracker;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A rule that adds the same expense every few days, weeks, months or years,
+ * such as rent or a subscription. Occurrence k falls on the start date plus
+ * k * every intervals, always counted from the start, so a monthly rule on
+ * the 31st lands on the last day of shorter months and returns to the 31st
+ * afterwards. generated counts the occurrences already added to the ledger.
+ * Rules are immutable: adding occurrences replaces a rule with a copy.
+ */
+class RecurringRule {
+
+    final int id;
+    final long amountCents;
+    final int categoryId;
+    final String note;
+    final ReportEngine.Interval interval;
+    final int every;
+    final LocalDate startDate;
+    /** The last day an occurrence may fall on, or null if the rule never ends. */
+    final LocalDate endDate;
+    final int generated;
+
+    RecurringRule(int id, long amountCents, int categoryId, String note, ReportEngine.Interval interval, int every,
+            LocalDate startDate, LocalDate endDate, int generated) {
+        if (every < 1) {
+            throw new IllegalArgumentException("A rule must repeat at least every 1 " + interval);
+        }
+        this.id = id;
+        this.amountCents = amountCents;
+        this.categoryId = categoryId;
+        this.note = note;
+        this.interval = interval;
+        this.every = every;
+        this.startDate = startDate;
+        this.endDate = endDate;
+        this.generated = generated;
+    }
+
+    RecurringRule withGenerated(int generated) {
+        return new RecurringRule(id, amountCents, categoryId, note, interval, every, startDate, endDate, generated);
+    }
+
+    LocalDate occurrence(int k) {
+        return startDate.plus((long) k * every, interval.unit);
+    }
+
+    /** Returns the number of occurrences on or before the day, ignoring any after the end date. */
+    int dueCount(LocalDate day) {
+        LocalDate last = endDate != null && endDate.isBefore(day) ? endDate : day;
+        if (last.isBefore(startDate)) {
+            return 0;
+        }
+        // between() undercounts when the start day does not exist in the last month, so step past that
+        int count = Math.toIntExact(interval.unit.between(startDate, last) / every + 1);
+        while (!occurrence(count).isAfter(last)) {
+            count++;
+        }
+        return count;
+    }
+
+    /** Describes the schedule, such as "Every month" or "Every 2 weeks". */
+    String schedule() {
+        String unit = interval.toString().toLowerCase();
+        return every == 1 ? "Every " + unit : "Every " + every + " " + unit + "s";
+    }
+
+    /**
+     * Creates the expenses of occurrences generated up to counts[i] of each
+     * rule, ordered by date. The result depends only on the rules and counts,
+     * so replaying the journal recreates exactly the rows that were added.
+     */
+    static List<Expense> occurrences(List<RecurringRule> rules, int[] counts) {
+        List<Expense> occurrences = new ArrayList<>();
+        for (int i = 0; i < rules.size(); i++) {
+            RecurringRule rule = rules.get(i);
+            for (int k = rule.generated; k < counts[i]; k++) {
+                occurrences.add(new Expense(rule.amountCents, rule.categoryId, rule.occurrence(k), rule.note));
+            }
+        }
+        // List.sort is stable, so occurrences on the same day keep the order of their rules
+        occurrences.sort(Comparator.comparing(Expense::getDate));
+        return occurrences;
+    }
+}
\ No newline at end of file
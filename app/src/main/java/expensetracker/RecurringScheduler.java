@@ -0,0 +1,74 @@
+package expensetracker;
+
+import java.time.LocalDate;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+
+/**
+ * Adds due recurring expenses at startup and then once an hour. Occurrences
+ * are generated on a background thread, however many years of them are due,
+ * and the finished batch is handed to the thread that owns the store (the
+ * event dispatch thread in the UI). There it is appended in one step and
+ * reported once, with the index of its first row. A snapshot after a large
+ * catch-up is queued on the store's snapshot writer.
+ */
+class RecurringScheduler {
+
+    private static final long CHECK_INTERVAL_MINUTES = 60;
+
+    private final ExpenseStore store;
+    private final Executor owner;
+    private final IntConsumer onAdded;
+    private final ScheduledExecutorService executor;
+
+    RecurringScheduler(ExpenseStore store, Executor owner, IntConsumer onAdded) {
+        this.store = store;
+        this.owner = owner;
+        this.onAdded = onAdded;
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "recurring-scheduler");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    void start() {
+        executor.scheduleWithFixedDelay(this::materializeDue, 0, CHECK_INTERVAL_MINUTES, TimeUnit.MINUTES);
+    }
+
+    /** Checks for due occurrences now, for example after a rule was added. */
+    void runNow() {
+        if (!executor.isShutdown()) {
+            executor.execute(this::materializeDue);
+        }
+    }
+
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void materializeDue() {
+        try {
+            ExpenseStore.RecurringBatch batch = store.planRecurring(LocalDate.now());
+            if (batch == null) {
+                return;
+            }
+            owner.execute(() -> {
+                int firstRow = store.applyRecurring(batch);
+                if (firstRow < 0) {
+                    // A rule changed while the batch was being generated
+                    runNow();
+                } else {
+                    onAdded.accept(firstRow);
+                    store.compactRecurring();
+                }
+            });
+        } catch (RuntimeException e) {
+            // Keep the periodic check alive; the next run tries again
+            System.out.println("Error adding recurring expenses: " + e.getMessage());
+        }
+    }
+}
\ No newline at end of file
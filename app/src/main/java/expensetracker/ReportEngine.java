@@ -0,0 +1,215 @@
+package expensetracker;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.IsoFields;
+import java.time.temporal.TemporalAdjusters;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.IntStream;
+
+/**
+ * Computes report summaries from the aggregate index on the calling thread.
+ * {@link ReportWorker} runs it in the background for the UI; batch jobs call
+ * it directly.
+ */
+class ReportEngine {
+
+    /** The most buckets a trend may have; longer ranges need a longer interval. */
+    static final int MAX_BUCKETS = 1000;
+
+    private static final Metrics.Timer REPORT_TIMER = Metrics.timer("report.compute");
+    private static final Metrics.Timer TREND_TIMER = Metrics.timer("report.trend");
+
+    /** The calendar unit of a trend's buckets. Weeks start on Monday, as in ISO 8601. */
+    enum Interval {
+        DAY("Day", ChronoUnit.DAYS),
+        WEEK("Week", ChronoUnit.WEEKS),
+        MONTH("Month", ChronoUnit.MONTHS),
+        YEAR("Year", ChronoUnit.YEARS);
+
+        private final String displayName;
+        final ChronoUnit unit;
+
+        Interval(String displayName, ChronoUnit unit) {
+            this.displayName = displayName;
+            this.unit = unit;
+        }
+
+        /** Returns the first day of the bucket holding the date. */
+        LocalDate start(LocalDate date) {
+            return switch (this) {
+                case DAY -> date;
+                case WEEK -> date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+                case MONTH -> date.withDayOfMonth(1);
+                case YEAR -> date.withDayOfYear(1);
+            };
+        }
+
+        /** Returns the number of buckets that cover the range. */
+        long count(LocalDate startDate, LocalDate endDate) {
+            return unit.between(start(startDate), start(endDate)) + 1;
+        }
+
+        String label(LocalDate start) {
+            return switch (this) {
+                case DAY -> start.toString();
+                case WEEK -> String.format("%d-W%02d", start.get(IsoFields.WEEK_BASED_YEAR),
+                        start.get(IsoFields.WEEK_OF_WEEK_BASED_YEAR));
+                case MONTH -> start.toString().substring(0, 7);
+                case YEAR -> Integer.toString(start.getYear());
+            };
+        }
+
+        @Override
+        public String toString() {
+            return displayName;
+        }
+    }
+
+    /** The totals of one date range; categories and categoryTotals are parallel arrays. */
+    static final class Report {
+        final LocalDate startDate;
+        final LocalDate endDate;
+        final int count;
+        final long total;
+        final String[] categories;
+        final long[] categoryTotals;
+
+        Report(LocalDate startDate, LocalDate endDate, int count, long total, String[] categories,
+                long[] categoryTotals) {
+            this.startDate = startDate;
+            this.endDate = endDate;
+            this.count = count;
+            this.total = total;
+            this.categories = categories;
+            this.categoryTotals = categoryTotals;
+        }
+    }
+
+    /**
+     * Spending per bucket of a date range, in total and by category. The
+     * first and last buckets are cut to the range. categoryTotals[c][k] is
+     * the total of categories[c] in bucket k; categories are ordered by their
+     * total over the range, largest first.
+     */
+    static final class Trend {
+        final Interval interval;
+        final LocalDate startDate;
+        final LocalDate endDate;
+        final LocalDate[] bucketStarts;
+        final long[] totals;
+        final String[] categories;
+        final long[][] categoryTotals;
+
+        Trend(Interval interval, LocalDate startDate, LocalDate endDate, LocalDate[] bucketStarts, long[] totals,
+                String[] categories, long[][] categoryTotals) {
+            this.interval = interval;
+            this.startDate = startDate;
+            this.endDate = endDate;
+            this.bucketStarts = bucketStarts;
+            this.totals = totals;
+            this.categories = categories;
+            this.categoryTotals = categoryTotals;
+        }
+
+        String label(int bucket) {
+            return interval.label(bucketStarts[bucket]);
+        }
+    }
+
+    private final AggregateIndex aggregates;
+    private final CategoryDictionary categories;
+
+    ReportEngine(AggregateIndex aggregates, CategoryDictionary categories) {
+        this.aggregates = aggregates;
+        this.categories = categories;
+    }
+
+    ReportEngine(ExpenseStore store) {
+        this(store.aggregates(), store.categories());
+    }
+
+    Report compute(LocalDate startDate, LocalDate endDate) {
+        long startDay = startDate.toEpochDay();
+        long endDay = endDate.toEpochDay();
+        Metrics.Sample sample = REPORT_TIMER.start();
+        try {
+            // The index and the dictionary can change between calls, so read the range in one locked step
+            synchronized (aggregates) {
+                aggregates.awaitReady();
+                synchronized (categories) {
+                    long[] totals = new long[categories.capacity()];
+                    int[] counts = new int[totals.length];
+                    aggregates.categoryTotals(startDay, endDay, totals, counts);
+
+                    String[] names = new String[totals.length];
+                    long[] amounts = new long[totals.length];
+                    int present = 0;
+                    for (int id = 0; id < totals.length; id++) {
+                        if (counts[id] > 0) {
+                            names[present] = categories.name(id);
+                            amounts[present++] = totals[id];
+                        }
+                    }
+                    return new Report(startDate, endDate, aggregates.count(startDay, endDay),
+                            aggregates.total(startDay, endDay), Arrays.copyOf(names, present),
+                            Arrays.copyOf(amounts, present));
+                }
+            }
+        } finally {
+            sample.close();
+        }
+    }
+
+    Trend trend(LocalDate startDate, LocalDate endDate, Interval interval) {
+        if (endDate.isBefore(startDate)) {
+            throw new IllegalArgumentException("The end date is before the start date");
+        }
+        long count = interval.count(startDate, endDate);
+        if (count > MAX_BUCKETS) {
+            throw new IllegalArgumentException("A trend can have at most " + MAX_BUCKETS + " buckets; the range has "
+                    + count + ". Choose a longer interval or a shorter range.");
+        }
+        int buckets = (int) count;
+        LocalDate[] bucketStarts = new LocalDate[buckets];
+        long[] boundaries = new long[buckets + 1];
+        LocalDate bucketStart = interval.start(startDate);
+        for (int k = 0; k < buckets; k++) {
+            bucketStarts[k] = bucketStart;
+            boundaries[k] = (k == 0 ? startDate : bucketStart).toEpochDay();
+            bucketStart = bucketStart.plus(1, interval.unit);
+        }
+        boundaries[buckets] = endDate.toEpochDay() + 1;
+
+        Metrics.Sample sample = TREND_TIMER.start();
+        try {
+            synchronized (aggregates) {
+                aggregates.awaitReady();
+                synchronized (categories) {
+                    long[] totals = new long[buckets];
+                    long[][] byId = new long[categories.capacity()][buckets];
+                    aggregates.bucketTotals(boundaries, totals, byId);
+
+                    long[] sums = Arrays.stream(byId).mapToLong(row -> Arrays.stream(row).sum()).toArray();
+                    int[] present = IntStream.range(0, byId.length)
+                            .filter(id -> Arrays.stream(byId[id]).anyMatch(amount -> amount != 0))
+                            .boxed()
+                            .sorted(Comparator.comparingLong((Integer id) -> sums[id]).reversed())
+                            .mapToInt(Integer::intValue)
+                            .toArray();
+                    String[] names = new String[present.length];
+                    long[][] categoryTotals = new long[present.length][];
+                    for (int c = 0; c < present.length; c++) {
+                        names[c] = categories.name(present[c]);
+                        categoryTotals[c] = byId[present[c]];
+                    }
+                    return new Trend(interval, startDate, endDate, bucketStarts, totals, names, categoryTotals);
+                }
+            }
+        } finally {
+            sample.close();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,79 @@
+package expensetracker;
+
+import javax.swing.*;
+import java.time.LocalDate;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Runs a {@link ReportEngine} on a background thread and publishes its
+ * reports and trends on the event dispatch thread. Requests of one kind made
+ * within a short delay of each other are coalesced into one computation, and
+ * a new request cancels any earlier one of the same kind that has not been
+ * published yet.
+ */
+class ReportWorker {
+
+    private static final long COALESCE_DELAY_MS = 50;
+
+    private final ReportEngine engine;
+    private final ScheduledExecutorService executor;
+    private final Latest<ReportEngine.Report> reports = new Latest<>();
+    private final Latest<ReportEngine.Trend> trends = new Latest<>();
+
+    ReportWorker(ReportEngine engine) {
+        this.engine = engine;
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "report-worker");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Schedules a report for the given range. Must be called on the event
+     * dispatch thread; onDone is invoked there too, and only for the latest
+     * request.
+     */
+    void request(LocalDate startDate, LocalDate endDate, Consumer<ReportEngine.Report> onDone) {
+        reports.request(() -> engine.compute(startDate, endDate), onDone);
+    }
+
+    /** Schedules a trend, under the same rules as {@link #request}. */
+    void requestTrend(LocalDate startDate, LocalDate endDate, ReportEngine.Interval interval,
+            Consumer<ReportEngine.Trend> onDone) {
+        trends.request(() -> engine.trend(startDate, endDate, interval), onDone);
+    }
+
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /** The pending request of one kind; only its latest result is published. */
+    private final class Latest<T> {
+        private ScheduledFuture<?> pending;
+        private volatile long generation;
+
+        void request(Supplier<T> computation, Consumer<T> onDone) {
+            long requestGeneration = ++generation;
+            if (pending != null) {
+                pending.cancel(true);
+            }
+            pending = executor.schedule(() -> {
+                if (requestGeneration != generation) {
+                    return;
+                }
+                T result = computation.get();
+                SwingUtilities.invokeLater(() -> {
+                    if (requestGeneration == generation) {
+                        onDone.accept(result);
+                    }
+                });
+            }, COALESCE_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,339 @@
+package expensetracker;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Trigram inverted index over the category, date and note of every expense.
+ * Plain search text is answered from the index; text containing regex
+ * metacharacters falls back to one precompiled pattern run over the ledger.
+ * The index is built on the first search and then kept up to date through
+ * the row* methods.
+ * <p>
+ * Posting lists hold row ids rather than row numbers: ids are handed out as
+ * rows are appended and keep their order, and a deleted row's id stays
+ * behind as a tombstone, so a delete touches no posting list. A Fenwick tree
+ * over the live ids turns an id into its row number and back in O(log n).
+ * Once tombstones make up half of the ids the index is dropped and rebuilt
+ * on the next search.
+ */
+class SearchIndex {
+
+    private static final String REGEX_METACHARACTERS = "\\^$.|?*+()[]{}";
+    private static final char FIELD_SEPARATOR = '\n';
+    private static final Metrics.Counter ROWS_SCANNED = Metrics.counter("rows.scanned");
+
+    /** Sorted, growable list of row ids. */
+    private static final class RowList {
+        int[] rows = new int[4];
+        int size;
+
+        void append(int row) {
+            if (size > 0 && rows[size - 1] == row) {
+                return;
+            }
+            if (size == rows.length) {
+                rows = Arrays.copyOf(rows, size * 2);
+            }
+            rows[size++] = row;
+        }
+
+        void insert(int row) {
+            int position = Arrays.binarySearch(rows, 0, size, row);
+            if (position >= 0) {
+                return;
+            }
+            if (size == rows.length) {
+                rows = Arrays.copyOf(rows, size * 2);
+            }
+            int insertAt = -(position + 1);
+            System.arraycopy(rows, insertAt, rows, insertAt + 1, size - insertAt);
+            rows[insertAt] = row;
+            size++;
+        }
+
+        void remove(int row) {
+            int position = Arrays.binarySearch(rows, 0, size, row);
+            if (position >= 0) {
+                System.arraycopy(rows, position + 1, rows, position, size - position - 1);
+                size--;
+            }
+        }
+
+        boolean contains(int row) {
+            return Arrays.binarySearch(rows, 0, size, row) >= 0;
+        }
+    }
+
+    private final Ledger expenses;
+    private Map<Long, RowList> postings;
+    // The trigrams holding each character and each pair of characters, for needles shorter than a trigram
+    private Map<Long, List<Long>> trigramsByShortGram;
+    // Ids handed out, and a Fenwick tree holding 1 for each id whose row is not deleted
+    private int idCount;
+    private int[] liveIds;
+    private BitSet deleted;
+    private int deletedCount;
+
+    SearchIndex(Ledger expenses) {
+        this.expenses = expenses;
+    }
+
+    /**
+     * Returns the rows matching the search text, or null if the text is empty
+     * and every row matches.
+     *
+     * @throws java.util.regex.PatternSyntaxException if the text is an invalid regex
+     */
+    BitSet search(String text) {
+        if (text.isEmpty()) {
+            return null;
+        }
+        if (!isLiteral(text)) {
+            return scan(Pattern.compile(text, Pattern.CASE_INSENSITIVE));
+        }
+        ensureBuilt();
+        String needle = text.toLowerCase(Locale.ROOT);
+        return needle.length() < 3 ? searchShort(needle) : searchTrigrams(needle);
+    }
+
+    /** Call after a row has been appended. */
+    void rowAdded(int row) {
+        if (postings == null) {
+            return;
+        }
+        if (row != idCount - deletedCount) {
+            // Only appended rows get ids in order
+            invalidate();
+            return;
+        }
+        if (idCount == liveIds.length - 1) {
+            buildLiveIds(idCount * 2);
+        }
+        int id = idCount++;
+        for (int i = id + 1; i < liveIds.length; i += i & -i) {
+            liveIds[i]++;
+        }
+        indexRow(row, id, true);
+    }
+
+    /** Call before a row is modified in place. */
+    void rowChanging(int row) {
+        if (postings != null) {
+            int id = idOf(row);
+            String text = rowText(row);
+            for (int i = 0; i + 3 <= text.length(); i++) {
+                RowList rows = postings.get(trigram(text, i));
+                if (rows != null) {
+                    rows.remove(id);
+                }
+            }
+        }
+    }
+
+    /** Call after a row has been modified in place. */
+    void rowChanged(int row) {
+        if (postings != null) {
+            indexRow(row, idOf(row), false);
+        }
+    }
+
+    /** Call after a row has been deleted; its id is left in the postings as a tombstone. */
+    void rowDeleted(int row) {
+        if (postings == null) {
+            return;
+        }
+        int id = idOf(row);
+        for (int i = id + 1; i < liveIds.length; i += i & -i) {
+            liveIds[i]--;
+        }
+        deleted.set(id);
+        deletedCount++;
+        if (deletedCount * 2 > idCount) {
+            invalidate();
+        }
+    }
+
+    /** Drops the index after bulk changes; it is rebuilt on the next search. */
+    void invalidate() {
+        postings = null;
+        trigramsByShortGram = null;
+        liveIds = null;
+        deleted = null;
+    }
+
+    private void ensureBuilt() {
+        if (postings == null) {
+            postings = new HashMap<>();
+            trigramsByShortGram = new HashMap<>();
+            idCount = expenses.size();
+            deleted = new BitSet();
+            deletedCount = 0;
+            buildLiveIds(Math.max(16, idCount * 2));
+            for (int row = 0; row < idCount; row++) {
+                indexRow(row, row, true);
+            }
+            ROWS_SCANNED.add(expenses.size());
+        }
+    }
+
+    /** Builds the tree of live ids for a capacity, in linear time. */
+    private void buildLiveIds(int capacity) {
+        liveIds = new int[capacity + 1];
+        for (int i = 1; i <= capacity; i++) {
+            if (i <= idCount && !deleted.get(i - 1)) {
+                liveIds[i]++;
+            }
+            int parent = i + (i & -i);
+            if (parent <= capacity) {
+                liveIds[parent] += liveIds[i];
+            }
+        }
+    }
+
+    /** Returns the row number of a live id: the number of live ids before it. */
+    private int rowOf(int id) {
+        int row = 0;
+        for (int i = id; i > 0; i -= i & -i) {
+            row += liveIds[i];
+        }
+        return row;
+    }
+
+    /** Returns the id of a row: the live id with that many live ids before it. */
+    private int idOf(int row) {
+        int id = 0;
+        int remaining = row + 1;
+        for (int step = Integer.highestOneBit(liveIds.length - 1); step > 0; step >>= 1) {
+            if (id + step < liveIds.length && liveIds[id + step] < remaining) {
+                id += step;
+                remaining -= liveIds[id];
+            }
+        }
+        return id;
+    }
+
+    private void indexRow(int row, int id, boolean appending) {
+        String text = rowText(row);
+        for (int i = 0; i + 3 <= text.length(); i++) {
+            long trigram = trigram(text, i);
+            RowList rows = postings.get(trigram);
+            if (rows == null) {
+                rows = new RowList();
+                postings.put(trigram, rows);
+                addShortGrams(trigram);
+            }
+            if (appending) {
+                rows.append(id);
+            } else {
+                rows.insert(id);
+            }
+        }
+    }
+
+    private void addShortGrams(long trigram) {
+        char a = (char) (trigram >>> 32);
+        char b = (char) (trigram >>> 16);
+        char c = (char) trigram;
+        for (long gram : new long[] {a, b, c, bigram(a, b), bigram(b, c)}) {
+            List<Long> trigrams = trigramsByShortGram.computeIfAbsent(gram, k -> new ArrayList<>());
+            if (trigrams.isEmpty() || trigrams.get(trigrams.size() - 1) != trigram) {
+                trigrams.add(trigram);
+            }
+        }
+    }
+
+    // Every occurrence of a one or two character needle lies inside some trigram,
+    // because the separators and the ten-character date make each row text long
+    // enough, so the union of the posting lists of the trigrams holding it is exact.
+    private BitSet searchShort(String needle) {
+        BitSet matches = new BitSet(expenses.size());
+        long gram = needle.length() == 1 ? needle.charAt(0) : bigram(needle.charAt(0), needle.charAt(1));
+        for (long trigram : trigramsByShortGram.getOrDefault(gram, List.of())) {
+            RowList rows = postings.get(trigram);
+            for (int i = 0; i < rows.size; i++) {
+                if (!deleted.get(rows.rows[i])) {
+                    matches.set(rowOf(rows.rows[i]));
+                }
+            }
+        }
+        return matches;
+    }
+
+    private BitSet searchTrigrams(String needle) {
+        RowList[] lists = new RowList[needle.length() - 2];
+        for (int i = 0; i < lists.length; i++) {
+            lists[i] = postings.get(trigram(needle, i));
+            if (lists[i] == null) {
+                return new BitSet();
+            }
+        }
+        Arrays.sort(lists, (a, b) -> Integer.compare(a.size, b.size));
+
+        BitSet matches = new BitSet(expenses.size());
+        RowList smallest = lists[0];
+        candidates:
+        for (int i = 0; i < smallest.size; i++) {
+            int id = smallest.rows[i];
+            if (deleted.get(id)) {
+                continue;
+            }
+            for (int j = 1; j < lists.length; j++) {
+                if (!lists[j].contains(id)) {
+                    continue candidates;
+                }
+            }
+            // Trigrams can all be present without being contiguous, so confirm longer needles
+            int row = rowOf(id);
+            if (lists.length == 1 || rowText(row).contains(needle)) {
+                matches.set(row);
+            }
+        }
+        return matches;
+    }
+
+    private BitSet scan(Pattern pattern) {
+        BitSet matches = new BitSet(expenses.size());
+        Matcher matcher = pattern.matcher("");
+        for (int row = 0; row < expenses.size(); row++) {
+            if (matcher.reset(expenses.categoryAt(row)).find()
+                    || matcher.reset(LocalDate.ofEpochDay(expenses.epochDayAt(row)).toString()).find()
+                    || matcher.reset(expenses.noteAt(row)).find()) {
+                matches.set(row);
+            }
+        }
+        ROWS_SCANNED.add(expenses.size());
+        return matches;
+    }
+
+    private String rowText(int row) {
+        return (expenses.categoryAt(row) + FIELD_SEPARATOR + LocalDate.ofEpochDay(expenses.epochDayAt(row))
+                + FIELD_SEPARATOR + expenses.noteAt(row)).toLowerCase(Locale.ROOT);
+    }
+
+    private static boolean isLiteral(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (REGEX_METACHARACTERS.indexOf(text.charAt(i)) >= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long trigram(String text, int start) {
+        return ((long) text.charAt(start) << 32) | ((long) text.charAt(start + 1) << 16) | text.charAt(start + 2);
+    }
+
+    // Above every single character, so that pairs and characters share one map
+    private static long bigram(char first, char second) {
+        return 1L << 32 | (long) first << 16 | second;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,67 @@
+package expensetracker;
+
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * Read-only table of a {@link ReportEngine.Trend}: one row per category below
+ * a row of totals, one column per bucket, and a last column with the total of
+ * each row over the whole range. Amounts are exposed as Long cents, to be
+ * shown with {@link ExpenseTableModel#AMOUNT_RENDERER}.
+ */
+class TrendTableModel extends AbstractTableModel {
+
+    private static final long serialVersionUID = 1L;
+    private static final String TOTAL = "Total";
+
+    private ReportEngine.Trend trend;
+    private long[] rowTotals = new long[0];
+
+    /** Shows a new trend; the columns change with its buckets. */
+    void setTrend(ReportEngine.Trend trend) {
+        this.trend = trend;
+        rowTotals = new long[trend.categories.length + 1];
+        for (long amount : trend.totals) {
+            rowTotals[0] += amount;
+        }
+        for (int c = 0; c < trend.categories.length; c++) {
+            for (long amount : trend.categoryTotals[c]) {
+                rowTotals[c + 1] += amount;
+            }
+        }
+        fireTableStructureChanged();
+    }
+
+    @Override
+    public int getRowCount() {
+        return trend == null ? 0 : trend.categories.length + 1;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return trend == null ? 1 : trend.totals.length + 2;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        if (column == 0) {
+            return "Category";
+        }
+        return column == getColumnCount() - 1 ? TOTAL : trend.label(column - 1);
+    }
+
+    @Override
+    public Class<?> getColumnClass(int columnIndex) {
+        return columnIndex == 0 ? String.class : Long.class;
+    }
+
+    @Override
+    public Object getValueAt(int rowIndex, int columnIndex) {
+        if (columnIndex == 0) {
+            return rowIndex == 0 ? TOTAL : trend.categories[rowIndex - 1];
+        }
+        if (columnIndex == getColumnCount() - 1) {
+            return rowTotals[rowIndex];
+        }
+        return rowIndex == 0 ? trend.totals[columnIndex - 1] : trend.categoryTotals[rowIndex - 1][columnIndex - 1];
+    }
+}
\ No newline at end of file
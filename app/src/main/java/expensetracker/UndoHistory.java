@@ -0,0 +1,98 @@
+package expensetracker;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Bounded undo and redo stacks. A change keeps only the delta needed to
+ * reverse and repeat it: the index and the old and new rows of an edit, the
+ * index and row of an added or deleted expense, the rows of an import, or
+ * the redirected dictionary ids of a category merge. Nothing copies the
+ * ledger, so undoing a change costs about as much as making it. The oldest
+ * changes are dropped once there are more than MAX_CHANGES of them or they
+ * hold more than MAX_ROWS rows between them. Not synchronized;
+ * {@link ExpenseStore} guards it.
+ */
+class UndoHistory {
+
+    /** One undoable change. firstRow and rowCount tell views which rows it touched. */
+    abstract static class Change {
+
+        enum Kind {
+            /** Rows were added: undoing removes them, redoing inserts them again. */
+            ADD,
+            /** A row was replaced. */
+            UPDATE,
+            /** A row was removed: undoing inserts it again, redoing removes it. */
+            DELETE,
+            /** The category list changed; rows may show other categories now. */
+            CATEGORY
+        }
+
+        final Kind kind;
+        final String description;
+        final int firstRow;
+        final int rowCount;
+
+        Change(Kind kind, String description, int firstRow, int rowCount) {
+            this.kind = kind;
+            this.description = description;
+            this.firstRow = firstRow;
+            this.rowCount = rowCount;
+        }
+
+        abstract void undo();
+
+        abstract void redo();
+    }
+
+    static final int MAX_CHANGES = 100;
+    static final int MAX_ROWS = 1_000_000;
+
+    private final Deque<Change> undoable = new ArrayDeque<>();
+    private final Deque<Change> redoable = new ArrayDeque<>();
+    private long rows;
+
+    /** Records a change that was just made; changes that were undone can no longer be redone. */
+    void record(Change change) {
+        for (Change undone : redoable) {
+            rows -= undone.rowCount;
+        }
+        redoable.clear();
+        undoable.push(change);
+        rows += change.rowCount;
+        while (!undoable.isEmpty() && (undoable.size() > MAX_CHANGES || rows > MAX_ROWS)) {
+            rows -= undoable.removeLast().rowCount;
+        }
+    }
+
+    /** Undoes the last change and returns it, or returns null if there is nothing to undo. */
+    Change undo() {
+        Change change = undoable.poll();
+        if (change != null) {
+            change.undo();
+            redoable.push(change);
+        }
+        return change;
+    }
+
+    /** Redoes the last undone change and returns it, or returns null if there is nothing to redo. */
+    Change redo() {
+        Change change = redoable.poll();
+        if (change != null) {
+            change.redo();
+            undoable.push(change);
+        }
+        return change;
+    }
+
+    /** The change undo() would undo, or null. */
+    Change nextUndo() {
+        return undoable.peek();
+    }
+
+    /** The change redo() would redo, or null. */
+    Change nextRedo() {
+        return redoable.peek();
+    }
+}
\ No newline at end of file
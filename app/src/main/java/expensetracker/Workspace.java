@@ -0,0 +1,303 @@
+package expensetracker;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * A directory of named ledgers, such as one per cost centre. Each ledger is
+ * a subdirectory holding the files of its own {@link ExpenseStore}, so a
+ * ledger opened through the workspace or on its own is the same ledger.
+ * <p>
+ * Ledgers are opened on demand and kept in a least recently used list whose
+ * estimated heap use is bounded by a budget: opening one past the budget
+ * closes the ledgers used longest ago, which writes their snapshots. A
+ * ledger in use by {@link #withLedger} is pinned and never closed under its
+ * caller.
+ * <p>
+ * The workspace keeps one category dictionary that every ledger's categories
+ * are interned into as it is opened, saved as a ledger file without rows.
+ * Each ledger keeps its own dictionary ids on disk, since its rows, journal
+ * and undo history refer to them; a roll-up maps each ledger's categories
+ * onto the shared ids by name, which costs O(categories) per ledger. New
+ * ledgers start with the shared category list.
+ */
+class Workspace implements Closeable {
+
+    /** Work done with a ledger while it is pinned. */
+    interface LedgerTask<T> {
+        T run(ExpenseStore store) throws IOException;
+    }
+
+    /** A report over every ledger; ledgers, ledgerTotals and ledgerCounts are parallel arrays. */
+    static final class RollUp {
+        /** Totals by category across all ledgers, in the order of the shared dictionary. */
+        final ReportEngine.Report report;
+        final String[] ledgers;
+        final long[] ledgerTotals;
+        final int[] ledgerCounts;
+
+        RollUp(ReportEngine.Report report, String[] ledgers, long[] ledgerTotals, int[] ledgerCounts) {
+            this.report = report;
+            this.ledgers = ledgers;
+            this.ledgerTotals = ledgerTotals;
+            this.ledgerCounts = ledgerCounts;
+        }
+    }
+
+    private static final String CATEGORIES_FILE_NAME = "categories.ledger";
+
+    /** A ledger of the workspace, open while store is set. Guarded by the workspace lock, except as noted. */
+    private static final class Entry {
+        ExpenseStore store;
+        long bytes;
+        int pins;
+        /** A store being closed on eviction; whoever holds the entry's lock first finishes closing it. */
+        ExpenseStore closing;
+
+        void finishClosing() {
+            if (closing != null) {
+                closing.close();
+                closing = null;
+            }
+        }
+    }
+
+    private final File directory;
+    private final long heapBudget;
+    private final CategoryDictionary categories;
+    // Every ledger used so far, least recently used first
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long residentBytes;
+
+    private Workspace(File directory, long heapBudget, CategoryDictionary categories) {
+        this.directory = directory;
+        this.heapBudget = heapBudget;
+        this.categories = categories;
+    }
+
+    /** Opens the workspace kept in a directory, keeping ledgers open up to half the maximum heap. */
+    static Workspace open(File directory) throws IOException {
+        return open(directory, Runtime.getRuntime().maxMemory() / 2);
+    }
+
+    /** Opens the workspace kept in a directory, creating it if needed. */
+    static Workspace open(File directory, long heapBudget) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create workspace " + directory);
+        }
+        File file = new File(directory, CATEGORIES_FILE_NAME);
+        CategoryDictionary categories = file.exists() ? LedgerFile.read(file).categories : new CategoryDictionary();
+        return new Workspace(directory, heapBudget, categories);
+    }
+
+    /** The shared dictionary, which holds the categories of every ledger opened so far. */
+    CategoryDictionary categories() {
+        return categories;
+    }
+
+    /** Returns the names of the ledgers, sorted. */
+    List<String> ledgerNames() {
+        File[] ledgers = directory.listFiles(File::isDirectory);
+        List<String> names = new ArrayList<>();
+        if (ledgers != null) {
+            for (File ledger : ledgers) {
+                names.add(ledger.getName());
+            }
+        }
+        names.sort(null);
+        return names;
+    }
+
+    /**
+     * Runs a task with a ledger, opening it first if it is not open, or
+     * creating it if there is no such ledger yet. The ledger stays open while
+     * the task runs, however many others are opened meanwhile.
+     */
+    <T> T withLedger(String name, LedgerTask<T> task) throws IOException {
+        Entry entry = acquire(name);
+        try {
+            return task.run(entry.store);
+        } finally {
+            release(entry);
+        }
+    }
+
+    /**
+     * Reports the totals of a date range over every ledger. Ledgers are read
+     * in parallel, each as it is paged in, and only their small per-ledger
+     * reports are kept, so the workspace need not fit in memory at once.
+     */
+    RollUp rollUp(LocalDate startDate, LocalDate endDate) {
+        List<String> names = ledgerNames();
+        ReportEngine.Report[] reports = new ReportEngine.Report[names.size()];
+        IntStream.range(0, reports.length).parallel().forEach(i -> {
+            Entry entry = acquire(names.get(i));
+            try {
+                reports[i] = new ReportEngine(entry.store).compute(startDate, endDate);
+            } finally {
+                release(entry);
+            }
+        });
+
+        long[] ledgerTotals = new long[reports.length];
+        int[] ledgerCounts = new int[reports.length];
+        long total = 0;
+        int count = 0;
+        synchronized (categories) {
+            long[] totals = new long[categories.capacity()];
+            boolean[] present = new boolean[totals.length];
+            for (int i = 0; i < reports.length; i++) {
+                ReportEngine.Report report = reports[i];
+                ledgerTotals[i] = report.total;
+                ledgerCounts[i] = report.count;
+                total += report.total;
+                count += report.count;
+                for (int c = 0; c < report.categories.length; c++) {
+                    int id = categories.intern(report.categories[c]);
+                    if (id >= totals.length) {
+                        totals = Arrays.copyOf(totals, categories.capacity());
+                        present = Arrays.copyOf(present, totals.length);
+                    }
+                    totals[id] += report.categoryTotals[c];
+                    present[id] = true;
+                }
+            }
+            List<String> categoryNames = new ArrayList<>();
+            long[] categoryTotals = new long[totals.length];
+            for (int id = 0; id < totals.length; id++) {
+                if (present[id]) {
+                    categoryTotals[categoryNames.size()] = totals[id];
+                    categoryNames.add(categories.name(id));
+                }
+            }
+            ReportEngine.Report report = new ReportEngine.Report(startDate, endDate, count, total,
+                    categoryNames.toArray(new String[0]), Arrays.copyOf(categoryTotals, categoryNames.size()));
+            return new RollUp(report, names.toArray(new String[0]), ledgerTotals, ledgerCounts);
+        }
+    }
+
+    /** Closes every open ledger and saves the shared dictionary. */
+    @Override
+    public void close() throws IOException {
+        List<Entry> open;
+        synchronized (this) {
+            open = new ArrayList<>(entries.values());
+        }
+        for (Entry entry : open) {
+            synchronized (entry) {
+                entry.finishClosing();
+                if (entry.store != null) {
+                    entry.store.close();
+                    entry.store = null;
+                }
+            }
+        }
+        LedgerFile.write(new File(directory, CATEGORIES_FILE_NAME), new Ledger(categories));
+    }
+
+    /**
+     * Pins a ledger, opening it if needed, and then closes ledgers that are
+     * not pinned, least recently used first, until the rest fit the budget.
+     * Opening happens under the entry's lock only, so ledgers open in
+     * parallel. If opening fails, the pin is taken back, so the ledger can
+     * still be evicted and opened again later.
+     */
+    private Entry acquire(String name) {
+        File ledgerDirectory = ledgerDirectory(name);
+        Entry entry;
+        synchronized (this) {
+            entry = entries.computeIfAbsent(name, key -> new Entry());
+            entry.pins++;
+        }
+        try {
+            synchronized (entry) {
+                entry.finishClosing();
+                if (entry.store == null) {
+                    open(entry, ledgerDirectory);
+                }
+            }
+        } catch (RuntimeException | Error e) {
+            synchronized (this) {
+                entry.pins--;
+            }
+            throw e;
+        }
+        evict();
+        return entry;
+    }
+
+    /** Opens the store of an entry; a store that opened but could not be set up is closed again. */
+    private void open(Entry entry, File ledgerDirectory) {
+        boolean created = !ledgerDirectory.exists();
+        ledgerDirectory.mkdirs();
+        ExpenseStore store = ExpenseStore.open(ledgerDirectory);
+        try {
+            if (created) {
+                store.addCategories(categories.names());
+            }
+            for (String category : store.categories().names()) {
+                categories.intern(category);
+            }
+        } catch (RuntimeException | Error e) {
+            store.close();
+            throw e;
+        }
+        long bytes = store.heapBytes();
+        synchronized (this) {
+            entry.store = store;
+            entry.bytes = bytes;
+            residentBytes += bytes;
+        }
+    }
+
+    /** Unpins a ledger, updating its estimate, which changes as it is edited. */
+    private void release(Entry entry) {
+        long bytes = entry.store.heapBytes();
+        synchronized (this) {
+            residentBytes += bytes - entry.bytes;
+            entry.bytes = bytes;
+            entry.pins--;
+        }
+        evict();
+    }
+
+    private void evict() {
+        List<Entry> evicted = new ArrayList<>();
+        synchronized (this) {
+            Iterator<Entry> lru = entries.values().iterator();
+            while (residentBytes > heapBudget && lru.hasNext()) {
+                Entry entry = lru.next();
+                if (entry.pins == 0 && entry.store != null) {
+                    entry.closing = entry.store;
+                    entry.store = null;
+                    residentBytes -= entry.bytes;
+                    entry.bytes = 0;
+                    evicted.add(entry);
+                }
+            }
+        }
+        // Closing writes a snapshot, so do it outside the workspace lock
+        for (Entry entry : evicted) {
+            synchronized (entry) {
+                entry.finishClosing();
+            }
+        }
+    }
+
+    private File ledgerDirectory(String name) {
+        if (name.isEmpty() || name.equals(".") || name.equals("..") || name.indexOf('/') >= 0
+                || name.indexOf('\\') >= 0 || name.indexOf(File.separatorChar) >= 0) {
+            throw new IllegalArgumentException("Invalid ledger name: " + name);
+        }
+        return new File(directory, name);
+    }
+}
\ No newline at end of file
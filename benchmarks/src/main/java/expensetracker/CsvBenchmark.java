@@ -0,0 +1,59 @@
+package expensetracker;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CSV costs behind exportToCsv() and importFromCsv(), without the progress
+ * dialog: a full export, and a parse of the file the export produced.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class CsvBenchmark {
+
+    @State(Scope.Thread)
+    public static class Files {
+        File exportFile;
+        File importFile;
+
+        @Setup(Level.Trial)
+        public void setUp(SyntheticLedger ledger) throws IOException {
+            exportFile = File.createTempFile("export", ".csv");
+            importFile = File.createTempFile("import", ".csv");
+            new CsvExporter(ledger.ledger).export(importFile, rows -> { }, () -> false);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            exportFile.delete();
+            importFile.delete();
+        }
+    }
+
+    @Benchmark
+    public int exportToCsv(SyntheticLedger ledger, Files files) throws IOException {
+        return new CsvExporter(ledger.ledger).export(files.exportFile, rows -> { }, () -> false);
+    }
+
+    @Benchmark
+    public CsvImporter.Result importFromCsv(Files files) throws IOException {
+        return new CsvImporter().parse(files.importFile);
+    }
+}
\ No newline at end of file
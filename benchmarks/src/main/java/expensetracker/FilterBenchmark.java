@@ -0,0 +1,65 @@
+package expensetracker;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.BitSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Search costs behind filterTable(): the first search, which builds the
+ * trigram index, and later searches against a built index for a note word,
+ * a two-character prefix, a word that matches nothing, and a regex.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class FilterBenchmark {
+
+    @State(Scope.Thread)
+    public static class Index {
+        SearchIndex index;
+
+        @Setup(Level.Trial)
+        public void setUp(SyntheticLedger ledger) {
+            index = new SearchIndex(ledger.ledger);
+            index.search("warm");
+        }
+    }
+
+    @Benchmark
+    public BitSet firstSearch(SyntheticLedger ledger) {
+        return new SearchIndex(ledger.ledger).search("groceries");
+    }
+
+    @Benchmark
+    public BitSet searchWord(Index index) {
+        return index.index.search("groceries");
+    }
+
+    @Benchmark
+    public BitSet searchShort(Index index) {
+        return index.index.search("ph");
+    }
+
+    @Benchmark
+    public BitSet searchMiss(Index index) {
+        return index.index.search("zebra");
+    }
+
+    @Benchmark
+    public BitSet searchRegex(Index index) {
+        return index.index.search("taxi|train");
+    }
+}
\ No newline at end of file
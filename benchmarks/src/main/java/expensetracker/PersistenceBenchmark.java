@@ -0,0 +1,57 @@
+package expensetracker;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Startup and snapshot costs: what loadData() does before the window opens
+ * (map the ledger file and build the aggregate index) and what saveData()
+ * does (write a full snapshot and rename it into place).
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class PersistenceBenchmark {
+
+    @State(Scope.Thread)
+    public static class Target {
+        File file;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            file = File.createTempFile("snapshot", ".ledger");
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            file.delete();
+        }
+    }
+
+    @Benchmark
+    public AggregateIndex loadData(SyntheticLedger ledger) throws IOException {
+        return AggregateIndex.of(LedgerFile.read(ledger.file).expenses);
+    }
+
+    @Benchmark
+    public long saveData(SyntheticLedger ledger, Target target) throws IOException {
+        LedgerFile.write(target.file, ledger.ledger);
+        return target.file.length();
+    }
+}
\ No newline at end of file
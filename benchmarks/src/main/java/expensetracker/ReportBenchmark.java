@@ -0,0 +1,69 @@
+package expensetracker;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The computation behind the Reports tab and the report command: the totals
+ * and category breakdown of one month and of the whole ledger, monthly and
+ * weekly trends over the whole ledger, and building the aggregate index they
+ * read, as the store does when it opens.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ReportBenchmark {
+
+    @State(Scope.Thread)
+    public static class Engine {
+        ReportEngine engine;
+        LocalDate firstDate;
+        LocalDate lastDate;
+
+        @Setup(Level.Trial)
+        public void setUp(SyntheticLedger ledger) {
+            engine = new ReportEngine(ledger.aggregates, ledger.ledger.categories());
+            firstDate = LocalDate.ofEpochDay(SyntheticLedger.FIRST_DAY);
+            lastDate = firstDate.plusDays(SyntheticLedger.DAYS - 1);
+        }
+    }
+
+    @Benchmark
+    public ReportEngine.Report monthReport(Engine engine) {
+        return engine.engine.compute(engine.firstDate.plusMonths(6), engine.firstDate.plusMonths(7));
+    }
+
+    @Benchmark
+    public ReportEngine.Report allTimeReport(Engine engine) {
+        return engine.engine.compute(engine.firstDate, engine.lastDate);
+    }
+
+    @Benchmark
+    public ReportEngine.Trend monthlyTrend(Engine engine) {
+        return engine.engine.trend(engine.firstDate, engine.lastDate, ReportEngine.Interval.MONTH);
+    }
+
+    @Benchmark
+    public ReportEngine.Trend weeklyTrend(Engine engine) {
+        return engine.engine.trend(engine.firstDate, engine.lastDate, ReportEngine.Interval.WEEK);
+    }
+
+    @Benchmark
+    public AggregateIndex buildIndex(SyntheticLedger ledger) {
+        return AggregateIndex.of(ledger.ledger);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,113 @@
+package expensetracker;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Several threads changing one store while others report on it and take
+ * snapshots, as a background import or a scheduled job would next to the UI.
+ * Each iteration starts from a fresh store in a temporary directory, and its
+ * teardown fails the run if the aggregate index disagrees with the rows,
+ * which would mean a change was lost or applied twice.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Group)
+public class StoreBenchmark {
+
+    static final String[] CATEGORIES = { "Food", "Transport", "Rent", "Utilities", "Health", "Leisure",
+            "Clothing", "Travel" };
+    static final int INITIAL_ROWS = 10_000;
+
+    File directory;
+    ExpenseStore store;
+    ReportEngine engine;
+    LocalDate firstDate;
+
+    @Setup(Level.Iteration)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("store").toFile();
+        store = ExpenseStore.open(directory);
+        engine = new ReportEngine(store);
+        firstDate = LocalDate.ofEpochDay(SyntheticLedger.FIRST_DAY);
+        for (int i = 0; i < INITIAL_ROWS; i++) {
+            add();
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        Ledger rows = store.snapshot();
+        long total = 0;
+        for (int i = 0; i < rows.size(); i++) {
+            total += rows.amountCentsAt(i);
+        }
+        ReportEngine.Report report = engine.compute(LocalDate.MIN, LocalDate.MAX);
+        store.close();
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+        if (report.count != rows.size() || report.total != total) {
+            throw new IllegalStateException("Index holds " + report.count + " expenses totalling " + report.total
+                    + " but the ledger holds " + rows.size() + " totalling " + total);
+        }
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(4)
+    public int add() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return store.add(1 + random.nextInt(50_000), CATEGORIES[random.nextInt(CATEGORIES.length)],
+                firstDate.plusDays(random.nextInt(SyntheticLedger.DAYS)), "stress");
+    }
+
+    /** Edits one of the initial rows; nothing deletes rows, so the index stays valid. */
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public void update() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        store.update(random.nextInt(INITIAL_ROWS), 1 + random.nextInt(50_000),
+                CATEGORIES[random.nextInt(CATEGORIES.length)],
+                firstDate.plusDays(random.nextInt(SyntheticLedger.DAYS)), "edited");
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public ReportEngine.Report report() {
+        LocalDate start = firstDate.plusDays(ThreadLocalRandom.current().nextInt(SyntheticLedger.DAYS));
+        return engine.compute(start, start.plusMonths(1));
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public int snapshot() {
+        return store.snapshot().size();
+    }
+}
\ No newline at end of file
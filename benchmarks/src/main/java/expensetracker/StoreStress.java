@@ -0,0 +1,263 @@
+package expensetracker;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A consistency run rather than a benchmark: several threads add, edit and
+ * delete expenses in one store for a while, others report on it and take
+ * snapshots, and one keeps saving it until shortly before the end, so that
+ * the journal holds the last changes. Reports taken meanwhile must add up.
+ * Afterwards the run checks that the store holds as many rows as were added
+ * less those deleted, that the aggregate index agrees with the rows in total
+ * and per category, and that a copy of the files, opened as after a crash,
+ * replays the journal into the same rows. It throws on the first mismatch.
+ *
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar expensetracker.StoreStress [writers] [seconds]
+ * </pre>
+ */
+public class StoreStress {
+
+    static final String[] CATEGORIES = StoreBenchmark.CATEGORIES;
+    static final int INITIAL_ROWS = 10_000;
+    static final int READERS = 2;
+    static final long SAVE_INTERVAL_MS = 200;
+    // Changes made after the saver stops, which only the journal holds when the files are copied
+    static final long UNSAVED_MS = 200;
+    // Long enough for the journal's commit window and a save queued by the last changes
+    static final long SETTLE_MS = 1000;
+
+    final File directory;
+    final ExpenseStore store;
+    final ReportEngine engine;
+    final LocalDate firstDate = LocalDate.ofEpochDay(SyntheticLedger.FIRST_DAY);
+    final AtomicInteger added = new AtomicInteger();
+    final AtomicInteger deleted = new AtomicInteger();
+    final AtomicInteger edited = new AtomicInteger();
+    final AtomicInteger reports = new AtomicInteger();
+    final AtomicReference<Throwable> failure = new AtomicReference<>();
+    volatile boolean stopping;
+    volatile boolean savesStopped;
+
+    StoreStress(File directory) {
+        this.directory = directory;
+        store = ExpenseStore.open(directory);
+        engine = new ReportEngine(store);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int writers = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        File directory = Files.createTempDirectory("store-stress").toFile();
+        File copy = Files.createTempDirectory("store-stress-copy").toFile();
+        try {
+            new StoreStress(directory).run(writers, seconds, copy);
+        } finally {
+            delete(directory);
+            delete(copy);
+        }
+    }
+
+    void run(int writers, int seconds, File copy) throws Exception {
+        for (int i = 0; i < INITIAL_ROWS; i++) {
+            add();
+        }
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < writers; i++) {
+            threads.add(new Thread(this::write, "writer-" + i));
+        }
+        for (int i = 0; i < READERS; i++) {
+            threads.add(new Thread(this::read, "reader-" + i));
+        }
+        Thread saver = new Thread(this::save, "saver");
+        saver.start();
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        TimeUnit.SECONDS.sleep(seconds);
+        savesStopped = true;
+        saver.join();
+        Thread.sleep(UNSAVED_MS);
+        stopping = true;
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (failure.get() != null) {
+            throw new IllegalStateException("Failed while running", failure.get());
+        }
+
+        Ledger rows = store.snapshot();
+        int expected = added.get() - deleted.get();
+        if (rows.size() != expected) {
+            throw new IllegalStateException("Store holds " + rows.size() + " expenses, but " + added.get()
+                    + " were added and " + deleted.get() + " deleted");
+        }
+        checkIndex(engine, rows);
+
+        Thread.sleep(SETTLE_MS);
+        for (File file : directory.listFiles()) {
+            Files.copy(file.toPath(), new File(copy, file.getName()).toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        ExpenseStore replayed = ExpenseStore.open(copy);
+        try {
+            Ledger replayedRows = replayed.snapshot();
+            for (int i = 0; i < Math.max(rows.size(), replayedRows.size()); i++) {
+                if (i >= rows.size() || i >= replayedRows.size() || !row(rows, i).equals(row(replayedRows, i))) {
+                    throw new IllegalStateException("Replayed journal differs at row " + i + " of " + rows.size()
+                            + ": " + (i < replayedRows.size() ? row(replayedRows, i) : "missing") + " instead of "
+                            + (i < rows.size() ? row(rows, i) : "nothing"));
+                }
+            }
+            checkIndex(new ReportEngine(replayed), replayedRows);
+        } finally {
+            replayed.close();
+            store.close();
+        }
+        System.out.println(writers + " writers for " + seconds + " s: " + added.get() + " added, " + edited.get()
+                + " edited, " + deleted.get() + " deleted, " + reports.get() + " reports; " + rows.size()
+                + " expenses, consistent");
+    }
+
+    void write() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        try {
+            while (!stopping) {
+                int op = random.nextInt(10);
+                if (op < 5) {
+                    add();
+                } else if (op < 8) {
+                    // Choosing the row and changing it in one step, since other writers delete rows
+                    synchronized (store) {
+                        int size = store.expenses().size();
+                        if (size > 0) {
+                            store.update(random.nextInt(size), amount(random), category(random), date(random),
+                                    "edited");
+                            edited.incrementAndGet();
+                        }
+                    }
+                } else {
+                    synchronized (store) {
+                        int size = store.expenses().size();
+                        if (size > 0) {
+                            store.delete(random.nextInt(size));
+                            deleted.incrementAndGet();
+                        }
+                    }
+                }
+            }
+        } catch (Throwable e) {
+            fail(e);
+        }
+    }
+
+    /** Reports over random ranges, each of which must see whole changes, and scans snapshots. */
+    void read() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        try {
+            while (!stopping) {
+                LocalDate start = date(random);
+                ReportEngine.Report report = engine.compute(start, start.plusDays(random.nextInt(400)));
+                long sum = 0;
+                for (long total : report.categoryTotals) {
+                    sum += total;
+                }
+                if (sum != report.total) {
+                    throw new IllegalStateException("Report from " + report.startDate + " totals " + report.total
+                            + " but its categories " + sum);
+                }
+                reports.incrementAndGet();
+                Ledger rows = store.snapshot();
+                for (int i = 0; i < rows.size(); i++) {
+                    if (rows.amountCentsAt(i) <= 0) {
+                        throw new IllegalStateException("Snapshot row " + i + " has amount " + rows.amountCentsAt(i));
+                    }
+                }
+            }
+        } catch (Throwable e) {
+            fail(e);
+        }
+    }
+
+    void save() {
+        try {
+            while (!savesStopped && !stopping) {
+                store.saveData();
+                Thread.sleep(SAVE_INTERVAL_MS);
+            }
+        } catch (Throwable e) {
+            fail(e);
+        }
+    }
+
+    void add() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        store.add(amount(random), category(random), date(random), "stress");
+        added.incrementAndGet();
+    }
+
+    /** Checks the index's totals, overall and per category, against a scan of the rows. */
+    static void checkIndex(ReportEngine engine, Ledger rows) {
+        long total = 0;
+        Map<String, Long> byCategory = new HashMap<>();
+        for (int i = 0; i < rows.size(); i++) {
+            total += rows.amountCentsAt(i);
+            byCategory.merge(rows.categoryAt(i), rows.amountCentsAt(i), Long::sum);
+        }
+        ReportEngine.Report report = engine.compute(LocalDate.MIN, LocalDate.MAX);
+        if (report.count != rows.size() || report.total != total) {
+            throw new IllegalStateException("Index holds " + report.count + " expenses totalling " + report.total
+                    + " but the ledger holds " + rows.size() + " totalling " + total);
+        }
+        for (int c = 0; c < report.categories.length; c++) {
+            long expected = byCategory.getOrDefault(report.categories[c], 0L);
+            if (report.categoryTotals[c] != expected) {
+                throw new IllegalStateException("Index totals " + report.categories[c] + " at "
+                        + report.categoryTotals[c] + " but its rows at " + expected);
+            }
+        }
+    }
+
+    void fail(Throwable e) {
+        failure.compareAndSet(null, e);
+        stopping = true;
+    }
+
+    int amount(ThreadLocalRandom random) {
+        return 1 + random.nextInt(50_000);
+    }
+
+    String category(ThreadLocalRandom random) {
+        return CATEGORIES[random.nextInt(CATEGORIES.length)];
+    }
+
+    LocalDate date(ThreadLocalRandom random) {
+        return firstDate.plusDays(random.nextInt(SyntheticLedger.DAYS));
+    }
+
+    static String row(Ledger rows, int i) {
+        return rows.amountCentsAt(i) + " " + rows.categoryAt(i) + " " + LocalDate.ofEpochDay(rows.epochDayAt(i))
+                + " " + rows.noteAt(i);
+    }
+
+    static void delete(File directory) throws IOException {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                Files.deleteIfExists(file.toPath());
+            }
+        }
+        Files.deleteIfExists(directory.toPath());
+    }
+}
\ No newline at end of file
@@ -0,0 +1,102 @@
+package expensetracker;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Random;
+
+/**
+ * A generated ledger shared by the benchmarks. It is written to a temporary
+ * ledger file and mapped back, as the application does at startup, so every
+ * benchmark runs against the same columns the application would see. The
+ * same seed always produces the same ledger.
+ */
+@State(Scope.Benchmark)
+public class SyntheticLedger {
+
+    static final long FIRST_DAY = LocalDate.of(2020, 1, 1).toEpochDay();
+    static final int DAYS = 5 * 365;
+
+    /** Note words; searches for one of them hit a predictable share of rows. */
+    static final String[] WORDS = { "lunch", "coffee", "groceries", "taxi", "train", "rent", "power", "water",
+            "internet", "phone", "cinema", "books", "gift", "doctor", "pharmacy", "gym", "fuel", "parking",
+            "insurance", "dinner", "snacks", "clothes", "shoes", "repair", "hotel", "flight", "museum", "pizza" };
+
+    @Param({ "10000", "100000", "1000000", "10000000" })
+    public int rows;
+
+    @Param({ "8", "250" })
+    public int categories;
+
+    @Param({ "16", "96" })
+    public int noteLength;
+
+    File file;
+    Ledger ledger;
+    AggregateIndex aggregates;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        file = File.createTempFile("synthetic", ".ledger");
+        LedgerFile.write(file, generate(rows, categories, noteLength, new Random(42)));
+        ledger = LedgerFile.read(file).expenses;
+        aggregates = AggregateIndex.of(ledger);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        file.delete();
+    }
+
+    /**
+     * Builds a ledger straight from columns, which takes a fraction of the
+     * memory of one Expense per row. Categories are skewed so that a few of
+     * them hold most rows, and note lengths vary around the given average.
+     */
+    static Ledger generate(int rows, int categoryCount, int averageNoteLength, Random random) {
+        CategoryDictionary dictionary = new CategoryDictionary();
+        for (int i = 0; i < categoryCount; i++) {
+            dictionary.intern("Category " + i);
+        }
+
+        long[] amounts = new long[rows];
+        int[] days = new int[rows];
+        int[] categoryIds = new int[rows];
+        int[] noteOffsets = new int[rows + 1];
+        for (int i = 0; i < rows; i++) {
+            amounts[i] = 1 + random.nextInt(50_000);
+            days[i] = (int) (FIRST_DAY + random.nextInt(DAYS));
+            categoryIds[i] = (int) (categoryCount * random.nextDouble() * random.nextDouble());
+            int length = averageNoteLength / 2 + random.nextInt(averageNoteLength + 1);
+            noteOffsets[i + 1] = Math.addExact(noteOffsets[i], length);
+        }
+
+        byte[] noteHeap = new byte[noteOffsets[rows]];
+        for (int i = 0; i < rows; i++) {
+            int position = noteOffsets[i];
+            int end = noteOffsets[i + 1];
+            while (position < end) {
+                byte[] word = WORDS[random.nextInt(WORDS.length)].getBytes(StandardCharsets.US_ASCII);
+                int count = Math.min(word.length, end - position);
+                System.arraycopy(word, 0, noteHeap, position, count);
+                position += count;
+                if (position < end) {
+                    noteHeap[position++] = ' ';
+                }
+            }
+        }
+        return new Ledger(dictionary, LongBuffer.wrap(amounts), IntBuffer.wrap(days), IntBuffer.wrap(categoryIds),
+                IntBuffer.wrap(noteOffsets), ByteBuffer.wrap(noteHeap));
+    }
+}
\ No newline at end of file
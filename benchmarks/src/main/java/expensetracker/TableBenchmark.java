@@ -0,0 +1,71 @@
+package expensetracker;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Table costs. The table model reads cells from the ledger on demand, so the
+ * old updateExpenseTable() rebuild is measured as a read of every cell (what
+ * a sort or a full refresh touches), and a repaint as a read of one screen
+ * of rows at a random scroll position.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class TableBenchmark {
+
+    private static final int VISIBLE_ROWS = 40;
+
+    @State(Scope.Thread)
+    public static class Model {
+        ExpenseTableModel model;
+        Random random;
+
+        @Setup(Level.Trial)
+        public void setUp(SyntheticLedger ledger) {
+            model = new ExpenseTableModel(ledger.ledger);
+            random = new Random(7);
+        }
+    }
+
+    @Benchmark
+    public void rebuildTable(Model model, Blackhole blackhole) {
+        ExpenseTableModel tableModel = model.model;
+        int rowCount = tableModel.getRowCount();
+        int columnCount = tableModel.getColumnCount();
+        for (int row = 0; row < rowCount; row++) {
+            for (int column = 0; column < columnCount; column++) {
+                blackhole.consume(tableModel.getValueAt(row, column));
+            }
+        }
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void paintVisibleRows(Model model, Blackhole blackhole) {
+        ExpenseTableModel tableModel = model.model;
+        int rowCount = tableModel.getRowCount();
+        int first = model.random.nextInt(Math.max(1, rowCount - VISIBLE_ROWS));
+        int last = Math.min(rowCount, first + VISIBLE_ROWS);
+        for (int row = first; row < last; row++) {
+            for (int column = 0; column < tableModel.getColumnCount(); column++) {
+                blackhole.consume(tableModel.getValueAt(row, column));
+            }
+        }
+    }
+}
\ No newline at end of file